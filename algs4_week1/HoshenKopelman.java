@@ -0,0 +1,235 @@
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ *  The <tt>HoshenKopelman</tt> class decides percolation for a grid whose open sites are all
+ *  known up front, e.g. after opening every site independently with probability <em>p</em>.
+ *  The sites are given as a BitSet indexed by the flat site index <em>(i-1)*N + (j-1)</em>,
+ *  the same order as the flat methods of the Percolation class.
+ *  <p>
+ *  Clusters are labeled with the Hoshen-Kopelman algorithm: a raster scan gives every open
+ *  site a label and joins it with the labels of its open left and upper neighbors, keeping
+ *  label equivalences in a union-find forest where the smaller label wins. The grid is cut
+ *  into horizontal strips, one per thread of the pool, and each strip is labeled on its own.
+ *  A label is the index of the site that first carried it, so labels of different strips
+ *  never collide and every strip only writes its own part of the label array. A final
+ *  single-threaded pass unions the labels across each strip boundary, which takes time
+ *  proportional to <em>N</em> per boundary.
+ *  <p>
+ *  The result is exactly that of opening the same sites in a Percolation system:
+ *  <em>percolates</em> and <em>isFull</em> agree site for site.
+ */
+
+public class HoshenKopelman {
+
+    private int N;
+    private BitSet open;
+    private int[] label;
+    private BitSet topRoots;
+    private boolean percolates;
+
+    /**
+     * Labels the clusters of the given grid on the calling thread.
+     * @throws java.lang.IllegalArgumentException if N < 1
+     * @param N the size of the grid.
+     * @param open the open sites, by flat site index.
+     */
+
+    public HoshenKopelman(int N, BitSet open) {
+        this(N, open, null);
+    }
+
+    /**
+     * Labels the clusters of the given grid in one strip per thread of the pool.
+     * @throws java.lang.IllegalArgumentException if N < 1
+     * @param N the size of the grid.
+     * @param open the open sites, by flat site index.
+     * @param pool the pool labeling the strips, or null to label the grid as a single strip.
+     */
+
+    public HoshenKopelman(int N, BitSet open, ForkJoinPool pool) {
+        if (N < 1) {
+            throw new IllegalArgumentException("Must have N > 0");
+        }
+        this.N = N;
+        this.open = open;
+        this.label = new int[N*N];
+        int strips = pool == null ? 1 : Math.min(N, pool.getParallelism());
+        int[] starts = new int[strips + 1];
+        for (int k = 0; k <= strips; k++) {
+            starts[k] = (int) ((long) k*N/strips);
+        }
+        if (pool == null) {
+            this.labelStrip(0, N);
+        } else {
+            pool.invoke(new Strips(starts, 0, strips));
+        }
+        for (int k = 1; k < strips; k++) {
+            this.mergeBoundary(starts[k]);
+        }
+        this.markRoots();
+    }
+
+    /**
+     * Labels the strips with indices in [lo, hi), splitting the range in half until a single strip is left.
+     */
+
+    private class Strips extends RecursiveAction {
+
+        private final int[] starts;
+        private final int lo;
+        private final int hi;
+
+        private Strips(int[] starts, int lo, int hi) {
+            this.starts = starts;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        protected void compute() {
+            if (hi - lo == 1) {
+                labelStrip(starts[lo], starts[hi]);
+            } else {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new Strips(starts, lo, mid), new Strips(starts, mid, hi));
+            }
+        }
+    }
+
+    /**
+     * Raster-scans the rows in [from, to), 0-based. A closed site gets label -1. Links are only made to
+     * sites inside the strip, so the strip can be labeled concurrently with the others.
+     * @param from the first row of the strip.
+     * @param to the row after the last row of the strip.
+     */
+
+    private void labelStrip(int from, int to) {
+        for (int i = from; i < to; i++) {
+            for (int j = 0; j < N; j++) {
+                int site = i*N + j;
+                if (!open.get(site)) {
+                    label[site] = -1;
+                    continue;
+                }
+                label[site] = site;
+                if (j > 0 && label[site - 1] >= 0) {
+                    link(site, site - 1);
+                }
+                if (i > from && label[site - N] >= 0) {
+                    link(site, site - N);
+                }
+            }
+        }
+    }
+
+    /**
+     * Joins the clusters across the boundary above the given row.
+     * @param row the first row of a strip, 0-based.
+     */
+
+    private void mergeBoundary(int row) {
+        for (int j = 0; j < N; j++) {
+            int site = row*N + j;
+            if (label[site] >= 0 && label[site - N] >= 0) {
+                link(site, site - N);
+            }
+        }
+    }
+
+    /**
+     * Records which roots have a site in the top row, then looks for a bottom row site under one of them.
+     */
+
+    private void markRoots() {
+        this.topRoots = new BitSet(N*N);
+        for (int j = 0; j < N; j++) {
+            if (label[j] >= 0) {
+                topRoots.set(find(j));
+            }
+        }
+        this.percolates = false;
+        for (int site = (N-1)*N; site < N*N; site++) {
+            if (label[site] >= 0 && topRoots.get(find(site))) {
+                this.percolates = true;
+                break;
+            }
+        }
+    }
+
+    private int find(int p) {
+        while (label[p] != p) {
+            label[p] = label[label[p]];
+            p = label[p];
+        }
+        return p;
+    }
+
+    private void link(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA < rootB) {
+            label[rootB] = rootA;
+        } else if (rootB < rootA) {
+            label[rootA] = rootB;
+        }
+    }
+
+    /**
+     * Checks to see if the system percolates.
+     * @return true if the system percolates, false otherwise.
+     */
+
+    public boolean percolates() {
+        return this.percolates;
+    }
+
+    /**
+     * Checks to see if the specified site is connected to an open top site, i.e. is "full".
+     * @throws java.lang.IndexOutOfBoundsException if site indices not in {1, ..., N}.
+     * @param i, j the index of the site to check.
+     * @return true if full, false otherwise.
+     */
+
+    public boolean isFull(int i, int j) {
+        if (i < 1 || i > this.N || j < 1 || j > this.N) {
+            throw new IndexOutOfBoundsException("index out of bounds!");
+        }
+        int site = (i-1)*N + j-1;
+        return label[site] >= 0 && topRoots.get(find(site));
+    }
+
+    /**
+     * Opens every site of an NxN grid independently with probability p.
+     * @param N the size of the grid.
+     * @param p the occupation probability.
+     * @param random the random stream to draw from.
+     * @return the open sites, by flat site index.
+     */
+
+    public static BitSet bernoulli(int N, double p, RandomSource random) {
+        BitSet open = new BitSet(N*N);
+        for (int site = 0; site < N*N; site++) {
+            if (random.uniform() < p) {
+                open.set(site);
+            }
+        }
+        return open;
+    }
+
+    /**
+    * takes an integer N, a probability p and optionally a number of threads, fills an NxN grid
+    * with probability p and prints whether it percolates.
+    */
+
+    public static void main(String[] args) {
+        int N = Integer.parseInt(args[0]);
+        double p = Double.parseDouble(args[1]);
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        BitSet open = bernoulli(N, p, new SplittableSource());
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        HoshenKopelman hk = new HoshenKopelman(N, open, pool);
+        pool.shutdown();
+        System.out.println("percolates = " + hk.percolates());
+    }
+}
@@ -0,0 +1,327 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/**
+ *  The <tt>LargePercolation</tt> class is a variant of the Percolation data type for grids
+ *  too large for Java arrays, i.e. with more than about 46340x46340 sites. Sites are indexed
+ *  by <em>long</em>, and all per-site state lives off the Java heap, either in direct buffers
+ *  or, when a directory is given, in memory-mapped files in that directory.
+ *  <p>
+ *  Each site takes 8 bytes for its union-find parent, 1 byte holding its rank together with
+ *  the "touches top" and "touches bottom" flags of its component, and 1 bit in the open
+ *  bitmap, about 9 bytes in all. A 100000x100000 grid thus needs about 90 GB of address space
+ *  but almost no heap. The union-find engine uses union by rank with path halving; a parent
+ *  is stored as its index plus one, with 0 meaning "is a root", so freshly zeroed memory is
+ *  already a valid forest of isolated sites and needs no initialization pass. With mapped
+ *  files that means nothing is written up front: pages that are never touched are never
+ *  written. Direct buffers are different, since <em>allocateDirect</em> zero-fills them, so
+ *  the constructor commits the full 9 bytes per site right away and takes time
+ *  proportional to the number of sites.
+ *  <p>
+ *  Percolation is detected the same way as in the Percolation class: a component percolates
+ *  once its root carries both flags, so <em>percolates</em> takes constant time and
+ *  <em>isFull</em> does not suffer from backwash.
+ *  <p>
+ *  Direct buffers count against -XX:MaxDirectMemorySize, which defaults to the maximum heap
+ *  size; use the mapped-file constructor for grids that do not fit in memory. Mapped files
+ *  are deleted as soon as they are mapped, and the memory is released once the system is
+ *  no longer reachable.
+ */
+
+public class LargePercolation {
+
+    private final long N;
+    private final Segments parent;
+    private final Segments rank;
+    private final Segments grid;
+    private boolean percolates;
+
+    private static final int RANK = 0x3f;
+    private static final int TOP = 0x40;
+    private static final int BOTTOM = 0x80;
+
+    /** the largest supported N, which keeps every byte offset within a long. */
+    public static final long MAX_N = 1L << 28;
+
+    /**
+     * Initializes an NxN grid of closed sites in direct buffers.
+     * @throws java.lang.IllegalArgumentException if N < 1 or N > MAX_N
+     * @param N sets the grid to size NxN
+     */
+
+    public LargePercolation(long N) {
+        this(N, null);
+    }
+
+    /**
+     * Initializes an NxN grid of closed sites in memory-mapped files created in the given directory.
+     * @throws java.lang.IllegalArgumentException if N < 1 or N > MAX_N
+     * @throws java.io.UncheckedIOException if the files cannot be created or mapped.
+     * @param N sets the grid to size NxN
+     * @param directory the directory for the backing files, or null to use direct buffers.
+     */
+
+    public LargePercolation(long N, Path directory) {
+        if (N < 1 || N > MAX_N) {
+            throw new IllegalArgumentException("Must have 0 < N <= " + MAX_N);
+        }
+        this.N = N;
+        long sites = N*N;
+        this.parent = new Segments(sites*8, directory);
+        this.rank = new Segments(sites, directory);
+        this.grid = new Segments(((sites + 63) >>> 6)*8, directory);
+        this.percolates = false;
+    }
+
+    /**
+     * Opens the specified site, and connects all opening neighboring sites.
+     * @throws java.lang.IndexOutOfBoundsException if site indices not in {1, ..., N}.
+     * @param i, j the index of the site to open.
+     */
+
+    public void open(long i, long j) {
+        this.checkIndices(i, j);
+        this.openSite(i, j, (i-1)*this.N + j-1);
+    }
+
+    /**
+     * Opens the site with the given flat index (i-1)*N + (j-1).
+     * @throws java.lang.IndexOutOfBoundsException if site not in {0, ..., N^2-1}.
+     * @param site the flat index of the site to open.
+     */
+
+    public void open(long site) {
+        this.checkSite(site);
+        this.openSite(site / this.N + 1, site % this.N + 1, site);
+    }
+
+    /**
+     * Checks to see if the specified site is open.
+     * @throws java.lang.IndexOutOfBoundsException if site indices not in {1, ..., N}.
+     * @param i, j the index of the site to check.
+     * @return true is the site is open, false otherwise.
+     */
+
+    public boolean isOpen(long i, long j) {
+        this.checkIndices(i, j);
+        return this.bit((i-1)*this.N + j-1);
+    }
+
+    /**
+     * Checks to see if the specified site is connected to an open top site, i.e. is "full".
+     * @throws java.lang.IndexOutOfBoundsException if site indices not in {1, ..., N}.
+     * @param i, j the index of the site to check.
+     * @return true if full, false otherwise.
+     */
+
+    public boolean isFull(long i, long j) {
+        this.checkIndices(i, j);
+        return (this.rank.getByte(this.find((i-1)*this.N + j-1)) & TOP) != 0;
+    }
+
+    /**
+     * Checks to see if the system percolates.
+     * @return true if the system percolates, false otherwise.
+     */
+
+    public boolean percolates() {
+        return this.percolates;
+    }
+
+    private void checkIndices(long i, long j) {
+        if (i < 1 || i > this.N || j < 1 || j > this.N) {
+            throw new IndexOutOfBoundsException("index out of bounds!");
+        }
+    }
+
+    private void checkSite(long site) {
+        if (site < 0 || site >= this.N*this.N) {
+            throw new IndexOutOfBoundsException("index out of bounds!");
+        }
+    }
+
+    private boolean bit(long site) {
+        return (this.grid.getLong(site >>> 6) & (1L << site)) != 0;
+    }
+
+    /**
+     * Opens a site whose indices have already been checked and connects its open neighbors,
+     * checking the grid border explicitly since the bitmap has no padding.
+     * @param i, j the index of the site to open.
+     * @param site the flat index of the same site.
+     */
+
+    private void openSite(long i, long j, long site) {
+        long word = this.grid.getLong(site >>> 6);
+        long mask = 1L << site;
+        if ((word & mask) != 0) {
+            return;
+        }
+        this.grid.putLong(site >>> 6, word | mask);
+        int flags = 0;
+        if (i == 1) {
+            flags |= TOP;
+        }
+        if (i == this.N) {
+            flags |= BOTTOM;
+        }
+        this.rank.putByte(site, (byte) flags);
+        if (flags == (TOP | BOTTOM)) {
+            this.percolates = true;
+        }
+        if (i > 1 && this.bit(site - this.N)) {
+            this.merge(site, site - this.N);
+        }
+        if (i < this.N && this.bit(site + this.N)) {
+            this.merge(site, site + this.N);
+        }
+        if (j > 1 && this.bit(site - 1)) {
+            this.merge(site, site - 1);
+        }
+        if (j < this.N && this.bit(site + 1)) {
+            this.merge(site, site + 1);
+        }
+    }
+
+    private long parentOf(long p) {
+        long stored = this.parent.getLong(p);
+        return stored == 0 ? p : stored - 1;
+    }
+
+    /**
+     * Returns the root of the component containing p, pointing every visited site at its grandparent.
+     * @param p the flat index of the site.
+     */
+
+    private long find(long p) {
+        long q = this.parentOf(p);
+        while (q != p) {
+            long g = this.parentOf(q);
+            if (g != q) {
+                this.parent.putLong(p, g + 1);
+            }
+            p = g;
+            q = this.parentOf(p);
+        }
+        return p;
+    }
+
+    /**
+     * Unions the components of two sites by rank and gives the resulting root the combined
+     * top and bottom flags of both components.
+     * @param a, b the two sites to connect.
+     */
+
+    private void merge(long a, long b) {
+        long rootA = this.find(a);
+        long rootB = this.find(b);
+        if (rootA == rootB) {
+            return;
+        }
+        int statusA = this.rank.getByte(rootA) & 0xff;
+        int statusB = this.rank.getByte(rootB) & 0xff;
+        int flags = (statusA | statusB) & (TOP | BOTTOM);
+        int rankA = statusA & RANK;
+        int rankB = statusB & RANK;
+        long root;
+        if (rankA < rankB) {
+            this.parent.putLong(rootA, rootB + 1);
+            root = rootB;
+        } else {
+            this.parent.putLong(rootB, rootA + 1);
+            root = rootA;
+            if (rankA == rankB) {
+                rankA++;
+            }
+        }
+        this.rank.putByte(root, (byte) (Math.max(rankA, rankB) | flags));
+        if (flags == (TOP | BOTTOM)) {
+            this.percolates = true;
+        }
+    }
+
+    /**
+     * A byte array indexed by long, made of direct or memory-mapped buffers of 2^30 bytes each.
+     * Since the chunk size is a multiple of 8, a long never straddles two chunks.
+     */
+
+    private static final class Segments {
+
+        private static final int SHIFT = 30;
+        private static final long MASK = (1L << SHIFT) - 1;
+
+        private final ByteBuffer[] chunks;
+
+        private Segments(long bytes, Path directory) {
+            int count = (int) ((bytes + MASK) >>> SHIFT);
+            this.chunks = new ByteBuffer[count];
+            try {
+                FileChannel channel = null;
+                if (directory != null) {
+                    Path file = Files.createTempFile(directory, "percolation", ".bin");
+                    channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                               StandardOpenOption.DELETE_ON_CLOSE);
+                }
+                for (int k = 0; k < count; k++) {
+                    long offset = (long) k << SHIFT;
+                    int size = (int) Math.min(1L << SHIFT, bytes - offset);
+                    ByteBuffer chunk = channel == null ? ByteBuffer.allocateDirect(size)
+                                                       : channel.map(FileChannel.MapMode.READ_WRITE, offset, size);
+                    this.chunks[k] = chunk.order(ByteOrder.nativeOrder());
+                }
+                if (channel != null) {
+                    channel.close();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private byte getByte(long index) {
+            return this.chunks[(int) (index >>> SHIFT)].get((int) (index & MASK));
+        }
+
+        private void putByte(long index, byte value) {
+            this.chunks[(int) (index >>> SHIFT)].put((int) (index & MASK), value);
+        }
+
+        private long getLong(long index) {
+            long offset = index << 3;
+            return this.chunks[(int) (offset >>> SHIFT)].getLong((int) (offset & MASK));
+        }
+
+        private void putLong(long index, long value) {
+            long offset = index << 3;
+            this.chunks[(int) (offset >>> SHIFT)].putLong((int) (offset & MASK), value);
+        }
+    }
+
+    /**
+    * takes an integer N, and optionally a directory for mapped files, opens random sites of an
+    * NxN grid until it percolates and prints the proportion of open sites. Sites are drawn with
+    * replacement, so the sites that were already open are not counted.
+    */
+
+    public static void main(String[] args) {
+        long N = Long.parseLong(args[0]);
+        LargePercolation g = args.length > 1 ? new LargePercolation(N, Path.of(args[1]))
+                                             : new LargePercolation(N);
+        SplittableRandom random = new SplittableRandom();
+        long opened = 0;
+        while (!g.percolates()) {
+            long site = random.nextLong(N*N);
+            if (!g.bit(site)) {
+                g.open(site);
+                opened++;
+            }
+        }
+        System.out.println("threshold = " + (double) opened/(N*N));
+    }
+}
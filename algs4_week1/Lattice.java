@@ -0,0 +1,45 @@
+/**
+ *  The <tt>Lattice</tt> enum lists the lattices a LatticePercolation system can be built on.
+ *  Every lattice is drawn on the NxN square grid of sites (i, j) and is given by the
+ *  neighbors of a site as row and column steps (di, dj):
+ *  <ul>
+ *  <li><em>SQUARE_4</em>: the 4 nearest neighbors, as in the Percolation class;</li>
+ *  <li><em>SQUARE_8</em>: the 4 nearest and the 4 diagonal neighbors;</li>
+ *  <li><em>TRIANGULAR</em>: the 4 nearest neighbors and the diagonal (-1, +1), (+1, -1),
+ *  which gives every site the 6 neighbors of a triangular lattice;</li>
+ *  <li><em>HONEYCOMB</em>: the left and right neighbors, and the neighbor below when
+ *  <em>i + j</em> is even or above when it is odd, a "brick wall" with the 3 neighbors of a
+ *  honeycomb lattice.</li>
+ *  </ul>
+ *  Since the neighbors of a honeycomb site depend on the parity of <em>i + j</em>, every lattice
+ *  keeps one table per parity. No step leaves the 3x3 window around a site, so a grid padded
+ *  with a single ring of closed sites never needs a border check.
+ */
+
+public enum Lattice {
+
+    SQUARE_4(new int[][] {{-1, 0}, {1, 0}, {0, -1}, {0, 1}},
+             new int[][] {{-1, 0}, {1, 0}, {0, -1}, {0, 1}}),
+    SQUARE_8(new int[][] {{-1, 0}, {1, 0}, {0, -1}, {0, 1}, {-1, -1}, {-1, 1}, {1, -1}, {1, 1}},
+             new int[][] {{-1, 0}, {1, 0}, {0, -1}, {0, 1}, {-1, -1}, {-1, 1}, {1, -1}, {1, 1}}),
+    TRIANGULAR(new int[][] {{-1, 0}, {1, 0}, {0, -1}, {0, 1}, {-1, 1}, {1, -1}},
+               new int[][] {{-1, 0}, {1, 0}, {0, -1}, {0, 1}, {-1, 1}, {1, -1}}),
+    HONEYCOMB(new int[][] {{0, -1}, {0, 1}, {1, 0}},
+              new int[][] {{0, -1}, {0, 1}, {-1, 0}});
+
+    private final int[][][] steps;
+
+    private Lattice(int[][] even, int[][] odd) {
+        this.steps = new int[][][] {even, odd};
+    }
+
+    /**
+     * Gives the neighbor steps of the sites of one parity.
+     * @param parity (i + j) mod 2 of the site.
+     * @return the (di, dj) steps to the site's neighbors.
+     */
+
+    int[][] steps(int parity) {
+        return this.steps[parity];
+    }
+}
@@ -0,0 +1,359 @@
+import java.util.Arrays;
+
+/**
+ *  The <tt>LatticePercolation</tt> class is a percolation system on any of the lattices of
+ *  the Lattice enum, for either site or bond percolation. In site percolation sites are
+ *  opened and connect to their open neighbors; in bond percolation every site is present
+ *  and bonds between neighboring sites are opened. The system percolates when a cluster
+ *  connects row 1 to row N.
+ *  <p>
+ *  Sites live on a grid padded with one ring of closed sites, and cell <em>i*(N+2) + j</em>
+ *  holds site (i, j). The neighbor steps of the lattice are turned into flat offset tables
+ *  once, one per parity of <em>i + j</em>, so the neighbors of a cell are just the cell plus
+ *  each offset. Opening a site therefore does one bit test per offset and one union per open
+ *  neighbor, and never branches on the grid border. Components carry "touches top" and
+ *  "touches bottom" flags as in the Percolation class, so <em>percolates</em> takes constant
+ *  time and <em>isFull</em> does not suffer from backwash.
+ *  <p>
+ *  A bond is identified by a site and one of the site's <em>forward</em> offsets, i.e. those
+ *  pointing to a cell with a larger index; every bond is forward from exactly one of its two
+ *  ends. Bond <em>s*F + k</em> joins the site with flat index <em>s</em> to its k-th forward
+ *  neighbor, where F is the largest number of forward offsets of any site. Not every such id
+ *  is a bond, since some point off the grid or past the end of a shorter table;
+ *  <em>isBond</em> tells them apart.
+ */
+
+public class LatticePercolation {
+
+    private int N;
+    private int width;
+    private Lattice lattice;
+    private boolean bonds;
+    private int[][] offsets;
+    private int[][] forward;
+    private int[][][] forwardSteps;
+    private int F;
+    private long[] open;
+    private long[] openBonds;
+    private int[] status;
+    private UnionFind graph;
+    private boolean percolates;
+    private int opened;
+    private int bondCount;
+
+    private static final int TOP = 1;
+    private static final int BOTTOM = 2;
+
+    /**
+     * Initializes an NxN system on the given lattice in which nothing is open.
+     * @throws java.lang.IllegalArgumentException if N < 1
+     * @param N sets the grid to size NxN
+     * @param lattice the lattice joining the sites.
+     * @param bonds true for bond percolation, false for site percolation.
+     */
+
+    public LatticePercolation(int N, Lattice lattice, boolean bonds) {
+        if (N < 1) {
+            throw new IllegalArgumentException("Must have N > 0");
+        }
+        this.N = N;
+        this.width = N + 2;
+        this.lattice = lattice;
+        this.bonds = bonds;
+        this.offsets = new int[2][];
+        this.forward = new int[2][];
+        this.forwardSteps = new int[2][][];
+        for (int parity = 0; parity < 2; parity++) {
+            int[][] steps = lattice.steps(parity);
+            this.offsets[parity] = new int[steps.length];
+            int count = 0;
+            for (int k = 0; k < steps.length; k++) {
+                this.offsets[parity][k] = steps[k][0]*this.width + steps[k][1];
+                if (this.offsets[parity][k] > 0) {
+                    count++;
+                }
+            }
+            this.forward[parity] = new int[count];
+            this.forwardSteps[parity] = new int[count][];
+            count = 0;
+            for (int k = 0; k < steps.length; k++) {
+                if (this.offsets[parity][k] > 0) {
+                    this.forward[parity][count] = this.offsets[parity][k];
+                    this.forwardSteps[parity][count++] = steps[k];
+                }
+            }
+            this.F = Math.max(this.F, count);
+        }
+        int cells = this.width*this.width;
+        this.open = new long[(cells + 63) >>> 6];
+        this.status = new int[cells];
+        this.graph = new PathHalvingUF(cells);
+        if (bonds) {
+            this.openBonds = new long[(N*N*this.F + 63) >>> 6];
+            this.bondCount = countBonds(N, lattice);
+        }
+        this.reset();
+    }
+
+    /**
+     * Closes everything again. In bond percolation every site stays present, so the sites of rows 1 and N
+     * get their top and bottom flags back right away.
+     */
+
+    public void reset() {
+        Arrays.fill(this.status, 0);
+        this.graph.reset();
+        this.percolates = false;
+        this.opened = 0;
+        Arrays.fill(this.open, 0L);
+        if (this.bonds) {
+            Arrays.fill(this.openBonds, 0L);
+            for (int i = 1; i <= N; i++) {
+                for (int j = 1; j <= N; j++) {
+                    this.open[cell(i, j) >>> 6] |= 1L << cell(i, j);
+                }
+            }
+            for (int j = 1; j <= N; j++) {
+                this.status[cell(1, j)] |= TOP;
+                this.status[cell(N, j)] |= BOTTOM;
+            }
+            this.percolates = N == 1;
+        }
+    }
+
+    /**
+     * @return the lattice of the system.
+     */
+
+    public Lattice lattice() {
+        return this.lattice;
+    }
+
+    /**
+     * @return true for bond percolation, false for site percolation.
+     */
+
+    public boolean isBondPercolation() {
+        return this.bonds;
+    }
+
+    /**
+     * Opens the specified site and connects it to all of its open neighbors.
+     * @throws java.lang.IndexOutOfBoundsException if site indices not in {1, ..., N}.
+     * @throws java.lang.UnsupportedOperationException in bond percolation.
+     * @param i, j the index of the site to open.
+     */
+
+    public void open(int i, int j) {
+        checkIndices(i, j);
+        this.openSite(cell(i, j), (i + j) & 1);
+    }
+
+    /**
+     * Opens the site with the given flat index (i-1)*N + (j-1).
+     * @throws java.lang.IndexOutOfBoundsException if site not in {0, ..., N^2-1}.
+     * @throws java.lang.UnsupportedOperationException in bond percolation.
+     * @param site the flat index of the site to open.
+     */
+
+    public void open(int site) {
+        if (site < 0 || site >= N*N) {
+            throw new IndexOutOfBoundsException("index out of bounds!");
+        }
+        int i = site / N + 1;
+        int j = site % N + 1;
+        this.openSite(cell(i, j), (i + j) & 1);
+    }
+
+    private void openSite(int cell, int parity) {
+        if (this.bonds) {
+            throw new UnsupportedOperationException("Sites are always open in bond percolation.");
+        }
+        long mask = 1L << cell;
+        if ((this.open[cell >>> 6] & mask) != 0) {
+            return;
+        }
+        this.open[cell >>> 6] |= mask;
+        this.opened++;
+        int row = cell / this.width;
+        int flags = (row == 1 ? TOP : 0) | (row == N ? BOTTOM : 0);
+        this.status[cell] = flags;
+        if (flags == (TOP | BOTTOM)) {
+            this.percolates = true;
+        }
+        for (int offset : this.offsets[parity]) {
+            int neighbor = cell + offset;
+            if ((this.open[neighbor >>> 6] & (1L << neighbor)) != 0) {
+                this.merge(cell, neighbor);
+            }
+        }
+    }
+
+    /**
+     * @return the number of bond ids, N^2 * F, some of which are not bonds.
+     */
+
+    public int bondSlots() {
+        return this.bonds ? N*N*this.F : 0;
+    }
+
+    /**
+     * @return the number of bonds of the lattice, or 0 in site percolation.
+     */
+
+    public int bondCount() {
+        return this.bondCount;
+    }
+
+    /**
+     * Counts the bonds of an NxN grid on a lattice without building a system, in time proportional to N.
+     * Each forward step of each parity gives one bond per site of that parity whose neighbor along the step
+     * is on the grid, and those sites fill a rectangle of rows and columns.
+     * @throws java.lang.IllegalArgumentException if N < 1
+     * @param N the size of the grid.
+     * @param lattice the lattice joining the sites.
+     * @return the number of bonds of the lattice.
+     */
+
+    public static int countBonds(int N, Lattice lattice) {
+        if (N < 1) {
+            throw new IllegalArgumentException("Must have N > 0");
+        }
+        int width = N + 2;
+        int count = 0;
+        for (int parity = 0; parity < 2; parity++) {
+            for (int[] step : lattice.steps(parity)) {
+                if (step[0]*width + step[1] <= 0) {
+                    continue;
+                }
+                int lo = Math.max(1, 1 - step[1]);
+                int hi = Math.min(N, N - step[1]);
+                for (int i = Math.max(1, 1 - step[0]); i <= Math.min(N, N - step[0]); i++) {
+                    int first = ((i + lo) & 1) == parity ? lo : lo + 1;
+                    if (first <= hi) {
+                        count += (hi - first)/2 + 1;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks to see if a bond id names a bond, i.e. its forward offset exists and stays on the grid.
+     * @param bond the bond id.
+     * @return true if the id names a bond, false otherwise.
+     */
+
+    public boolean isBond(int bond) {
+        if (!this.bonds || bond < 0 || bond >= N*N*this.F) {
+            return false;
+        }
+        int site = bond / this.F;
+        int k = bond % this.F;
+        int i = site / N + 1;
+        int j = site % N + 1;
+        int[][] steps = this.forwardSteps[(i + j) & 1];
+        if (k >= steps.length) {
+            return false;
+        }
+        int row = i + steps[k][0];
+        int col = j + steps[k][1];
+        return row >= 1 && row <= N && col >= 1 && col <= N;
+    }
+
+    /**
+     * Opens a bond and connects the two sites it joins.
+     * @throws java.lang.IllegalArgumentException if the id does not name a bond.
+     * @throws java.lang.UnsupportedOperationException in site percolation.
+     * @param bond the bond id.
+     */
+
+    public void openBond(int bond) {
+        if (!this.bonds) {
+            throw new UnsupportedOperationException("Bonds can only be opened in bond percolation.");
+        }
+        if (!this.isBond(bond)) {
+            throw new IllegalArgumentException("Not a bond: " + bond);
+        }
+        long mask = 1L << bond;
+        if ((this.openBonds[bond >>> 6] & mask) != 0) {
+            return;
+        }
+        this.openBonds[bond >>> 6] |= mask;
+        this.opened++;
+        int site = bond / this.F;
+        int i = site / N + 1;
+        int j = site % N + 1;
+        int cell = cell(i, j);
+        this.merge(cell, cell + this.forward[(i + j) & 1][bond % this.F]);
+    }
+
+    /**
+     * @return the number of sites opened in site percolation, or of bonds opened in bond percolation.
+     */
+
+    public int opened() {
+        return this.opened;
+    }
+
+    /**
+     * Checks to see if the specified site is open; in bond percolation every site is.
+     * @throws java.lang.IndexOutOfBoundsException if site indices not in {1, ..., N}.
+     * @param i, j the index of the site to check.
+     * @return true is the site is open, false otherwise.
+     */
+
+    public boolean isOpen(int i, int j) {
+        checkIndices(i, j);
+        return (this.open[cell(i, j) >>> 6] & (1L << cell(i, j))) != 0;
+    }
+
+    /**
+     * Checks to see if the specified site is open and connected to row 1, i.e. is "full".
+     * @throws java.lang.IndexOutOfBoundsException if site indices not in {1, ..., N}.
+     * @param i, j the index of the site to check.
+     * @return true if full, false otherwise.
+     */
+
+    public boolean isFull(int i, int j) {
+        return this.isOpen(i, j) && (this.status[graph.find(cell(i, j))] & TOP) != 0;
+    }
+
+    /**
+     * Checks to see if the system percolates.
+     * @return true if the system percolates, false otherwise.
+     */
+
+    public boolean percolates() {
+        return this.percolates;
+    }
+
+    private int cell(int i, int j) {
+        return i*this.width + j;
+    }
+
+    private void checkIndices(int i, int j) {
+        if (i < 1 || i > this.N || j < 1 || j > this.N) {
+            throw new IndexOutOfBoundsException("index out of bounds!");
+        }
+    }
+
+    /**
+     * Unions the components of two cells and gives the resulting root the combined flags of both.
+     * @param a, b the two cells to connect.
+     */
+
+    private void merge(int a, int b) {
+        int rootA = graph.find(a);
+        int rootB = graph.find(b);
+        if (rootA == rootB) {
+            return;
+        }
+        int flags = this.status[rootA] | this.status[rootB];
+        this.status[graph.link(rootA, rootB)] = flags;
+        if (flags == (TOP | BOTTOM)) {
+            this.percolates = true;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+import java.util.SplittableRandom;
+import java.util.function.LongFunction;
+
+/**
+ *  The <tt>NewmanZiff</tt> class runs the Newman-Ziff single-sweep analysis of the
+ *  Percolation data type. Each trial opens every site of an NxN grid in one random
+ *  permutation and, after each of the <em>N^2</em> openings, records whether the system
+ *  percolates and the size of the largest cluster. One trial therefore measures every
+ *  occupation count <em>n</em> at once, instead of one simulation per occupation probability.
+ *  <p>
+ *  Per occupation count the class reports the fraction of trials that percolate and the
+ *  mean largest cluster size. Results for an occupation probability <em>p</em> are obtained
+ *  by weighting these with the binomial distribution of <em>n</em>. The percolation threshold
+ *  of each trial, i.e. the proportion of open sites at the first opening that makes the
+ *  system percolate, is recorded as well.
+ *  <p>
+ *  A trial takes time proportional to <em>N^2</em> times the amortized cost of a union-find
+ *  operation. Trials are seeded from a master seed in the same way as in PercolationStats.
+ *  <p>
+ *  See M. E. J. Newman and R. M. Ziff, <i>Fast Monte Carlo algorithm for site or bond
+ *  percolation</i>, Phys. Rev. E 64, 016706 (2001).
+ */
+
+public class NewmanZiff {
+
+    private int N;
+    private int T;
+    private long[] spanning;
+    private long[] largest;
+    private double[] thresholds;
+
+    /**
+     * Runs T single-sweep trials on an NxN grid.
+     * @throws java.lang.IllegalArgumentException if N or T is not a positive integer.
+     * @param N the size of the Percolation grid.
+     * @param T the number of trials to run.
+     * @param seed the master seed.
+     */
+
+    public NewmanZiff(int N, int T, long seed) {
+        this(N, T, seed, SplittableSource::new);
+    }
+
+    /**
+     * Runs T single-sweep trials on an NxN grid, each drawing from the source the generator creates
+     * from the trial's seed.
+     * @throws java.lang.IllegalArgumentException if N or T is not a positive integer.
+     * @param N the size of the Percolation grid.
+     * @param T the number of trials to run.
+     * @param seed the master seed.
+     * @param generator creates the random source of a trial from its seed.
+     */
+
+    public NewmanZiff(int N, int T, long seed, LongFunction<RandomSource> generator) {
+        if (T < 1 || N < 1) {
+            throw new IllegalArgumentException("N,T must be positive integers.");
+        }
+        this.N = N;
+        this.T = T;
+        this.spanning = new long[N*N + 1];
+        this.largest = new long[N*N + 1];
+        this.thresholds = new double[T];
+        int[] order = new int[N*N];
+        Percolation g = new Percolation(N);
+        for (int t = 0; t < T; t++) {
+            g.reset();
+            this.sweep(t, generator.apply(PercolationStats.trialSeed(seed, t)), g, order);
+        }
+        for (int n = 1; n <= N*N; n++) {
+            this.spanning[n] += this.spanning[n - 1];
+        }
+    }
+
+    /**
+     * Opens all sites of a closed Percolation data type in a random order, adding the largest cluster
+     * size after each opening to the running sums. The first occupation count at which the system
+     * percolates is counted in spanning[], which the constructor turns into a running count.
+     * @param trial the index of the trial.
+     * @param random the random stream of the trial.
+     * @param g the closed system to open.
+     * @param order scratch space for the permutation of the sites.
+     */
+
+    private void sweep(int trial, RandomSource random, Percolation g, int[] order) {
+        int sites = N*N;
+        for (int l = 0; l < sites; l++) {
+            order[l] = l;
+        }
+        int biggest = 0;
+        int threshold = 0;
+        for (int n = 1; n <= sites; n++) {
+            int r = n - 1 + random.uniform(sites - n + 1);
+            int site = order[r];
+            order[r] = order[n - 1];
+            order[n - 1] = site;
+            g.open(site);
+            int size = g.clusterSize(site);
+            if (size > biggest) {
+                biggest = size;
+            }
+            this.largest[n] += biggest;
+            if (threshold == 0 && g.percolates()) {
+                threshold = n;
+            }
+        }
+        this.spanning[threshold]++;
+        this.thresholds[trial] = (double) threshold/sites;
+    }
+
+    /**
+     * @param n the number of open sites, in {0, ..., N^2}.
+     * @return the fraction of trials that percolate with n open sites.
+     */
+
+    public double spanningProbability(int n) {
+        return (double) this.spanning[checkCount(n)]/T;
+    }
+
+    /**
+     * @param n the number of open sites, in {0, ..., N^2}.
+     * @return the mean size of the largest cluster with n open sites.
+     */
+
+    public double meanLargestCluster(int n) {
+        return (double) this.largest[checkCount(n)]/T;
+    }
+
+    /**
+     * Gives the probability that the system percolates when each site is open with probability p.
+     * @param p the occupation probability, in [0, 1].
+     * @return the binomially weighted average of spanningProbability(n) over n.
+     */
+
+    public double spanningProbability(double p) {
+        return convolve(this.spanning, p);
+    }
+
+    /**
+     * Gives the mean size of the largest cluster when each site is open with probability p.
+     * @param p the occupation probability, in [0, 1].
+     * @return the binomially weighted average of meanLargestCluster(n) over n.
+     */
+
+    public double meanLargestCluster(double p) {
+        return convolve(this.largest, p);
+    }
+
+    /** gives the percolation threshold of each trial, as a proportion of open sites.
+    */
+
+    public double[] thresholds() {
+        return this.thresholds.clone();
+    }
+
+    /** gives the average proportion of open sites needed for percolation based on trials.
+    */
+
+    public double meanThreshold() {
+        double sum = 0;
+        for (double x : this.thresholds) {
+            sum += x;
+        }
+        return sum/T;
+    }
+
+    private int checkCount(int n) {
+        if (n < 0 || n > N*N) {
+            throw new IndexOutOfBoundsException("occupation count out of bounds!");
+        }
+        return n;
+    }
+
+    /**
+     * Averages the per-trial sums q[n] over trials and over n ~ Binomial(N^2, p). The binomial weights
+     * are built outward from the mode with the ratio B(n+1)/B(n) = (M-n)/(n+1) * p/(1-p), and the
+     * walk stops once the weights become negligible, so nothing overflows even for very large M. Rounding
+     * can push the quotient of the two sums just outside the range of the averaged values, e.g. a spanning
+     * probability of 1.0000000000000016, so the result is clamped to that range.
+     * @param q the per-occupation-count sums, of length N^2 + 1.
+     * @param p the occupation probability.
+     */
+
+    private double convolve(long[] q, double p) {
+        if (p < 0 || p > 1) {
+            throw new IllegalArgumentException("p must be in [0, 1].");
+        }
+        int M = N*N;
+        if (p == 0) {
+            return (double) q[0]/T;
+        } else if (p == 1) {
+            return (double) q[M]/T;
+        }
+        int mode = (int) Math.min(M, Math.floor((M + 1)*p));
+        double ratio = p/(1 - p);
+        double weight = 1;
+        double total = 1;
+        double sum = q[mode];
+        long lo = q[mode];
+        long hi = q[mode];
+        for (int n = mode; n < M && weight > 1e-17*total; n++) {
+            weight *= ratio*(M - n)/(n + 1);
+            total += weight;
+            sum += weight*q[n + 1];
+            lo = Math.min(lo, q[n + 1]);
+            hi = Math.max(hi, q[n + 1]);
+        }
+        weight = 1;
+        for (int n = mode; n > 0 && weight > 1e-17*total; n--) {
+            weight *= n/(ratio*(M - n + 1));
+            total += weight;
+            sum += weight*q[n - 1];
+            lo = Math.min(lo, q[n - 1]);
+            hi = Math.max(hi, q[n - 1]);
+        }
+        return Math.min((double) hi/T, Math.max((double) lo/T, sum/(total*T)));
+    }
+
+    /**
+    * takes integers N, T and a seed from user input, runs the sweep and prints the spanning
+    * probability and mean largest cluster for a few occupation probabilities.
+    */
+
+    public static void main(String[] args) {
+        int N = Integer.parseInt(args[0]);
+        int T = Integer.parseInt(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : new SplittableRandom().nextLong();
+        NewmanZiff nz = new NewmanZiff(N, T, seed);
+        System.out.println("mean threshold = " + nz.meanThreshold());
+        for (int k = 50; k <= 70; k += 2) {
+            double p = k/100.0;
+            System.out.println("p = " + p + ": P(percolates) = " + nz.spanningProbability(p)
+                               + ", largest cluster = " + nz.meanLargestCluster(p));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ *  The <tt>PathHalvingUF</tt> class is the default union-find engine of the
+ *  Percolation data type. It is backed by two primitive arrays, one holding the
+ *  parent of each element and one holding the size of each root's tree.
+ *  <p>
+ *  This implementation uses weighted quick union by size with path halving:
+ *  every <em>find</em> points each visited element at its grandparent, so trees stay
+ *  nearly flat. Initializing a data structure with <em>N</em> objects takes linear time.
+ *  Afterwards, <em>union</em>, <em>find</em> and <em>connected</em> take logarithmic time
+ *  in the worst case and near-constant amortized time (inverse Ackermann). When
+ *  UnionFindMetrics are enabled, every operation is counted, and resetting the engine
+ *  publishes the counts.
+ *  <p>
+ *  For additional documentation, see <a href="http://algs4.cs.princeton.edu/15uf">Section 1.5</a> of
+ *  <i>Algorithms, 4th Edition</i> by Robert Sedgewick and Kevin Wayne.
+ */
+
+public class PathHalvingUF implements UnionFind {
+
+    private final int[] parent;
+    private final int[] size;
+    private final UnionFindMetrics metrics = UnionFindMetrics.create();
+
+    /**
+     * Initializes an empty union-find data structure with N isolated elements 0 through N-1.
+     * @throws java.lang.IllegalArgumentException if N < 0
+     * @param N the number of elements.
+     */
+
+    public PathHalvingUF(int N) {
+        if (N < 0) {
+            throw new IllegalArgumentException("Must have N >= 0");
+        }
+        this.parent = new int[N];
+        this.size = new int[N];
+        this.reset();
+    }
+
+    /**
+     * Makes every element its own root again, in linear time and without allocating.
+     */
+
+    public void reset() {
+        for (int i = 0; i < this.parent.length; i++) {
+            this.parent[i] = i;
+            this.size[i] = 1;
+        }
+        if (UnionFindMetrics.ENABLED) {
+            this.metrics.publish();
+        }
+    }
+
+    public UnionFindMetrics metrics() {
+        return this.metrics;
+    }
+
+    public int size() {
+        return this.parent.length;
+    }
+
+    /**
+     * Returns the root of the component containing p, halving the path on the way up.
+     * @throws java.lang.IndexOutOfBoundsException unless 0 <= p < size().
+     * @param p the element.
+     * @return the root of the component containing p.
+     */
+
+    public int find(int p) {
+        int[] parent = this.parent;
+        int length = 0;
+        while (p != parent[p]) {
+            if (UnionFindMetrics.ENABLED) {
+                length += parent[p] == parent[parent[p]] ? 1 : 2;
+            }
+            parent[p] = parent[parent[p]];
+            p = parent[p];
+        }
+        if (UnionFindMetrics.ENABLED) {
+            this.metrics.find(length);
+        }
+        return p;
+    }
+
+    public int componentSize(int p) {
+        return size[find(p)];
+    }
+
+    public int rootSize(int root) {
+        return size[root];
+    }
+
+    public boolean connected(int p, int q) {
+        if (UnionFindMetrics.ENABLED) {
+            this.metrics.connected();
+        }
+        return find(p) == find(q);
+    }
+
+    /**
+     * Merges the components containing p and q, attaching the smaller tree below the larger one.
+     * @throws java.lang.IndexOutOfBoundsException unless both elements are in 0 through size()-1.
+     * @param p, q the two elements.
+     * @return the root of the merged component.
+     */
+
+    public int union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        return rootP == rootQ ? rootP : link(rootP, rootQ);
+    }
+
+    public int link(int rootP, int rootQ) {
+        if (UnionFindMetrics.ENABLED) {
+            this.metrics.union();
+        }
+        if (size[rootP] < size[rootQ]) {
+            parent[rootP] = rootQ;
+            size[rootQ] += size[rootP];
+            return rootQ;
+        }
+        parent[rootQ] = rootP;
+        size[rootP] += size[rootQ];
+        return rootP;
+    }
+}
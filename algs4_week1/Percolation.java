@@ -1,14 +1,62 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
 /**
  *  The <tt>Percolation</tt> class represents a percolation system data structure.
  *  It supports the <em>percolates</em> and <em>open</em> operations, 
  *  for opening sites and determning percolation properties of a grid, as 
- *  well as supporting methods. It also relies on the WeightedQuickFindUF class which
- *  is included in the zip file. 
+ *  well as supporting methods. Connectivity is kept in a UnionFind engine; by default
+ *  this is the in-tree PathHalvingUF class, but any other engine can be plugged in.
  *  <p>
- *  This implementation uses weighted quick union by size (without path compression).
+ *  The default engine uses weighted quick union by size with path halving.
  *  Initializing a data structure with <em>N^2</em> objects takes linear time.
- *  Afterwards, <em>isFull</em> and <em>percolates</em> and <em>connectNeighbors</em> take
- *  logarithmic time (in the worst case).
+ *  Afterwards, <em>isFull</em> and <em>connectNeighbors</em> take near-constant amortized
+ *  time, and <em>percolates</em> takes constant time.
+ *  <p>
+ *  Instead of virtual top and bottom nodes, every component root carries two flags
+ *  recording whether the component touches the top row and whether it touches the
+ *  bottom row. The flags are merged on every union, so the system percolates as soon
+ *  as one component carries both, and a site is full exactly when its component touches
+ *  the top row. Since nothing is ever joined to a virtual bottom node, <em>isFull</em>
+ *  does not suffer from backwash.
+ *  The flags take two bits per site, in a bitset indexed by the flat site index, and only
+ *  the bits of roots are read.
+ *  <p>
+ *  Open sites are stored in a flat bitset of <em>long</em> words rather than a
+ *  <em>boolean</em> matrix. The grid is padded with an always-closed border, so row
+ *  <em>i</em> and column <em>j</em> run over {0, ..., N+1}, and each padded row occupies
+ *  a whole number of words. Site (i, j) is bit <em>j mod 64</em> of word
+ *  <em>i*rowWords + j/64</em>, which makes the sites above and below it the same bit of the
+ *  words <em>rowWords</em> before and after. This takes one bit per site instead of one byte.
+ *  <p>
+ *  Besides the (i, j) methods, every query has a flat variant taking the site index
+ *  <em>(i-1)*N + (j-1)</em> in {0, ..., N^2-1}, i.e. the sites in row-major order. The flat
+ *  variants do a single bounds check and allocate nothing, which suits simulation loops that
+ *  draw site indices at random.
+ *  <p>
+ *  A system can be closed again with <em>reset</em>, which clears all of its arrays in place,
+ *  so loops running many trials of the same size can recycle one instance.
+ *  <p>
+ *  A system built on a RollbackUF engine also supports what-if analysis with
+ *  <em>checkpoint</em> and <em>rollback</em>. While a checkpoint is active, every opened site
+ *  and every change to a component's flags is pushed onto an undo log, next to the unions
+ *  logged by the engine itself, and a rollback pops both logs back to the checkpoint. Both
+ *  operations therefore take time proportional to the work being undone, not to <em>N^2</em>.
+ *  <p>
+ *  For callers that query <em>isFull</em> for every site, <em>trackFullSites</em> switches on a
+ *  second bitset, in the same padded layout as the open sites, holding the full sites. Whenever
+ *  an opened site ends up in a component touching the top row, a flood fill from it marks every
+ *  open site it reaches that is not full yet. A site is marked only once, so the fills cost
+ *  <em>O(N^2)</em> in total over the life of the system, and <em>isFull</em> becomes a single
+ *  bit read. The full sites can be exported with <em>fullSites</em>.
+ *  <p>
+ *  Likewise, <em>trackClusters</em> switches on a histogram of cluster sizes, updated inside
+ *  every union: the two old sizes lose a cluster and their sum gains one. The size of the
+ *  largest cluster, the number of clusters and the number of clusters of a given size can
+ *  then be read in constant time while sites are being opened.
+ *  <p>
+ *  When UnionFindMetrics are enabled and the engine records them, every opened site is counted
+ *  in the engine's metrics next to its unions and finds; see <em>metrics</em>.
  *  <p>
  *  For additional documentation, see <a href="http://algs4.cs.princeton.edu/15uf">Section 1.5</a> of
  *  <i>Algorithms, 4th Edition</i> by Robert Sedgewick and Kevin Wayne.
@@ -19,28 +67,71 @@
 
 public class Percolation {
 
+    private int N;
+    private long[] grid;
+    private int rowWords;
+    private UnionFind graph;
+    private long[] flagBits;
+    private boolean percolates;
+    private int[] undo;
+    private int undoSize;
+    private int[] marks;
+    private int depth;
+    private long[] full;
+    private int[] fillStack;
+    private int[] clusterSizes;
+    private int clusters;
+    private int largest;
+    private long[] fresh;
+    private UnionFindMetrics metrics;
+
+    private static final int TOP = 1;
+    private static final int BOTTOM = 2;
+    private static final int OPENED = -1;
+    private static final int FILLED = -2;
+    private static final int PERCOLATED = -1;
+    private static final int LARGEST = -2;
+    private static final int MERGED = -3;
+    private static final int MERGED_WITH = -4;
+
     /**
-     * Initializes an NxN grid of boolean values initialized to false, representing that all sites are closed.
-     * Also initializes an empty WeightedQuickUnion data structure, and creats virtual top and bottom nodes. 
+     * Initializes an NxN grid of bits initialized to 0, representing that all sites are closed.
+     * Also initializes an empty PathHalvingUF data structure with one element per site. 
      * @throws java.lang.IllegalArgumentException if N < 1
      * @param N sets the grid to size NxN
      */
-    
-    private int N;
-    private boolean[][] grid;
-    private WeightedQuickUnionUF graph;
-    private int top;
-    private int bottom;
 
     public Percolation(int N) {
+        this(N, new PathHalvingUF(checkSize(N)*N));
+    }
+
+    /**
+     * Initializes an NxN grid of closed sites whose connectivity is kept in the given union-find engine.
+     * The engine must be freshly created, i.e. all of its elements must be isolated.
+     * @throws java.lang.IllegalArgumentException if N < 1 or the engine has fewer than N*N elements.
+     * @param N sets the grid to size NxN
+     * @param graph the union-find engine, with at least N*N elements.
+     */
+
+    public Percolation(int N, UnionFind graph) {
+        checkSize(N);
+        if (graph.size() < N*N) {
+            throw new IllegalArgumentException("Union-find engine must have at least N*N elements");
+        }
+        this.N = N;
+        this.rowWords = ((N+2) + 63) >>> 6;
+        this.grid = new long[(N+2)*this.rowWords];
+        this.graph = graph;
+        this.metrics = graph.metrics();
+        this.flagBits = new long[(int) (((long) N*N + 31) >>> 5)];
+        this.percolates = false;
+    }
+
+    private static int checkSize(int N) {
         if (N < 1) {
             throw new IllegalArgumentException("Must have N > 0");
         }
-        this.N = N;
-        this.grid = new boolean[N+2][N+2];
-        this.graph = new WeightedQuickUnionUF((N*N) + 2);
-        this.top = N*N;
-        this.bottom = N*N + 1;
+        return N;
     }
 
     /**
@@ -52,12 +143,257 @@ public class Percolation {
     public void open(int i, int j) {
         if (i < 1 || i > this.N || j < 1 || j > this.N) {
             throw new IndexOutOfBoundsException("index out of bound!");
-        } else if (!this.grid[i][j]) {
-            this.grid[i][j] = true;
-            this.connectNeighbors(i, j);
+        } else {
+            this.openSite(i, j, matrixToList(i, j));
+        }
+    }
+
+    /**
+     * Opens the site with the given flat index, and connects all opening neighboring sites.
+     * @throws java.lang.IndexOutOfBoundsException if site not in {0, ..., N^2-1}.
+     * @param site the flat index of the site to open.
+     */
+
+    public void open(int site) {
+        this.checkSite(site);
+        this.openSite(site / this.N + 1, site % this.N + 1, site);
+    }
+
+    /**
+     * Opens a site whose indices have already been checked, unless it is open already.
+     * @param i, j the index of the site to open.
+     * @param site the flat index of the same site.
+     */
+
+    private void openSite(int i, int j, int site) {
+        int word = i*this.rowWords + (j >>> 6);
+        long mask = 1L << j;
+        if ((this.grid[word] & mask) == 0) {
+            this.grid[word] |= mask;
+            this.added(i, site);
+            this.connectNeighbors(i, j, site);
+            if (this.full != null && (this.flags(graph.find(site)) & TOP) != 0) {
+                this.fill(i, j);
+            }
+        }
+    }
+
+    /**
+     * Does the bookkeeping for a site whose open bit has just been set: logs it, counts it as a cluster of
+     * size 1, and gives it the top flag if it is in row 1 and the bottom flag if it is in row N.
+     * @param i the row of the site.
+     * @param site the flat index of the site.
+     */
+
+    private void added(int i, int site) {
+        if (UnionFindMetrics.ENABLED && this.metrics != null) {
+            this.metrics.open();
+        }
+        this.log(site, OPENED);
+        if (this.clusterSizes != null) {
+            this.clusterSizes[1]++;
+            this.clusters++;
+            if (this.largest < 1) {
+                this.setLargest(1);
+            }
+        }
+        int flags = 0;
+        if (i == 1) {
+            flags |= TOP;
+        }
+        if (i == this.N) {
+            flags |= BOTTOM;
+        }
+        if (flags != 0) {
+            this.setFlags(site, flags);
+        }
+        if (flags == (TOP | BOTTOM)) {
+            this.setPercolates();
+        }
+    }
+
+    /**
+     * Gives the top and bottom flags stored for a site, two bits of the flagBits bitset. They are only
+     * kept up to date at component roots, and a closed site has none.
+     * @param site the flat index of the site.
+     * @return TOP, BOTTOM, both or neither.
+     */
+
+    private int flags(int site) {
+        return (int) (this.flagBits[site >>> 5] >>> (site << 1)) & (TOP | BOTTOM);
+    }
+
+    private void setFlags(int site, int flags) {
+        int word = site >>> 5;
+        int shift = site << 1;
+        this.flagBits[word] = this.flagBits[word] & ~((long) (TOP | BOTTOM) << shift) | (long) flags << shift;
+    }
+
+    /**
+     * Opens every closed site independently with probability p; open sites stay open.
+     * <p>
+     * The open bits are drawn 64 sites at a time. Each of the 64 lanes of a word compares its own
+     * uniform number with p, one binary digit at a time from the most significant down: every random
+     * word supplies the next digit of all 64 numbers, a lane is decided at the first digit where its
+     * number differs from p, and the loop stops once every lane is decided. That takes about
+     * 8 random words per 64 sites, whatever p is, and draws p to 53 binary digits. Once the whole
+     * bitset is filled, the rows are joined one at a time, in two passes. The first links every run of
+     * consecutive new sites into one component by linking each site straight to the root of the run,
+     * without a find. The second joins each run to its neighbors: to the old open sites at its two ends,
+     * and to the row above and to old sites of the row below once per stretch of open sites, since
+     * neighboring open sites of those rows are in one component already. So no bond is unioned twice,
+     * and only the unions between a run and another component cost finds.
+     * @throws java.lang.IllegalArgumentException if p is not in [0, 1].
+     * @param p the probability of opening a closed site.
+     * @param random the random stream to draw from.
+     */
+
+    public void openBernoulli(double p, RandomSource random) {
+        if (!(p >= 0 && p <= 1)) {
+            throw new IllegalArgumentException("Must have 0 <= p <= 1");
+        }
+        if (this.fresh == null) {
+            this.fresh = new long[this.grid.length];
+        }
+        long[] fresh = this.fresh;
+        long bits = (long) (p*(1L << 53));
+        for (int i = 1; i <= this.N; i++) {
+            for (int w = 0; w < this.rowWords; w++) {
+                long lanes = this.rowMask(w);
+                long sites;
+                if (p == 1) {
+                    sites = lanes;
+                } else {
+                    sites = 0;
+                    long undecided = lanes;
+                    for (int digit = 52; digit >= 0 && undecided != 0; digit--) {
+                        long r = random.nextLong();
+                        if ((bits >>> digit & 1) != 0) {
+                            sites |= undecided & ~r;
+                            undecided &= r;
+                        } else {
+                            undecided &= ~r;
+                        }
+                    }
+                }
+                int word = i*this.rowWords + w;
+                fresh[word] = sites & ~this.grid[word];
+                this.grid[word] |= sites;
+            }
+        }
+        for (int i = 1; i <= this.N; i++) {
+            this.linkRuns(i, fresh);
+            this.joinRuns(i, fresh);
+        }
+        if (this.full != null) {
+            for (int i = 1; i <= this.N; i++) {
+                for (int w = 0; w < this.rowWords; w++) {
+                    int word = i*this.rowWords + w;
+                    for (long rest = fresh[word] & ~this.full[word]; rest != 0; rest &= rest - 1) {
+                        int j = (w << 6) + Long.numberOfTrailingZeros(rest);
+                        if (!this.fullBit(i, j) && (this.flags(graph.find(matrixToList(i, j))) & TOP) != 0) {
+                            this.fill(i, j);
+                        }
+                    }
+                }
+            }
+        }
+        Arrays.fill(fresh, 0L);
+    }
+
+    /**
+     * Does the bookkeeping of the new sites of a row and links every run of consecutive new sites into
+     * one component, each site straight to the root of its run.
+     * @param i the row.
+     * @param fresh the bitset of the new sites.
+     */
+
+    private void linkRuns(int i, long[] fresh) {
+        int root = -1;
+        long freshCarry = 0;
+        long startCarry = 0;
+        for (int w = 0; w < this.rowWords; w++) {
+            long opened = fresh[i*this.rowWords + w];
+            long starts = opened & ~(opened << 1 | freshCarry);
+            long afterStart = starts << 1 | startCarry;
+            int base = matrixToList(i, w << 6);
+            for (long rest = opened; rest != 0; rest &= rest - 1) {
+                this.added(i, base + Long.numberOfTrailingZeros(rest));
+            }
+            for (long rest = opened & ~starts; rest != 0; rest &= rest - 1) {
+                int b = Long.numberOfTrailingZeros(rest);
+                int site = base + b;
+                root = (afterStart & (1L << b)) != 0 ? site - 1 : root;
+                root = this.extend(root, site);
+            }
+            freshCarry = opened >>> 63;
+            startCarry = starts >>> 63;
         }
     }
 
+    /**
+     * Joins the runs of new sites of a row to their open neighbors: the old sites at their two ends, and
+     * the first site of every stretch of open sites next to them in the row above, or of old sites in the
+     * row below.
+     * @param i the row.
+     * @param fresh the bitset of the new sites.
+     */
+
+    private void joinRuns(int i, long[] fresh) {
+        long oldCarry = 0;
+        long upCarry = 0;
+        long downCarry = 0;
+        for (int w = 0; w < this.rowWords; w++) {
+            int word = i*this.rowWords + w;
+            long opened = fresh[word];
+            long old = this.grid[word] & ~opened;
+            long nextOld = w + 1 < this.rowWords ? this.grid[word + 1] & ~fresh[word + 1] : 0;
+            long left = opened & (old << 1 | oldCarry);
+            long right = opened & (old >>> 1 | nextOld << 63);
+            long up = opened & this.grid[word - this.rowWords];
+            long down = opened & this.grid[word + this.rowWords] & ~fresh[word + this.rowWords];
+            long upStarts = up & ~(up << 1 | upCarry);
+            long downStarts = down & ~(down << 1 | downCarry);
+            int base = matrixToList(i, w << 6);
+            for (long rest = left; rest != 0; rest &= rest - 1) {
+                int site = base + Long.numberOfTrailingZeros(rest);
+                merge(site, site - 1);
+            }
+            for (long rest = right; rest != 0; rest &= rest - 1) {
+                int site = base + Long.numberOfTrailingZeros(rest);
+                merge(site, site + 1);
+            }
+            for (long rest = upStarts; rest != 0; rest &= rest - 1) {
+                int site = base + Long.numberOfTrailingZeros(rest);
+                merge(site, site - this.N);
+            }
+            for (long rest = downStarts; rest != 0; rest &= rest - 1) {
+                int site = base + Long.numberOfTrailingZeros(rest);
+                merge(site, site + this.N);
+            }
+            oldCarry = old >>> 63;
+            upCarry = up >>> 63;
+            downCarry = down >>> 63;
+        }
+    }
+
+    /**
+     * Gives the bits of one word of a padded row that hold sites, i.e. columns 1 through N.
+     * @param w the index of the word within the row.
+     */
+
+    private long rowMask(int w) {
+        long mask = -1L;
+        if (w == 0) {
+            mask &= ~1L;
+        }
+        int last = this.N - (w << 6);
+        if (last < 63) {
+            mask &= (1L << (last + 1)) - 1;
+        }
+        return mask;
+    }
+
     /**
      * Checks to see if the specified site is open.
      * @throws java.lang.IndexOutOfBoundsException if site indices not in {1, ..., N}.
@@ -69,10 +405,22 @@ public class Percolation {
          if (i < 1 || i > this.N || j < 1 || j > this.N) {
              throw new IndexOutOfBoundsException("index out of bounds!");
         } else {
-             return this.grid[i][j];
+             return this.bit(i, j);
         }
     }
 
+    /**
+     * Checks to see if the site with the given flat index is open.
+     * @throws java.lang.IndexOutOfBoundsException if site not in {0, ..., N^2-1}.
+     * @param site the flat index of the site to check.
+     * @return true is the site is open, false otherwise. 
+     */
+
+    public boolean isOpen(int site) {
+        this.checkSite(site);
+        return this.bit(site / this.N + 1, site % this.N + 1);
+    }
+
     /**
      * Checks to see if the specified site is connected to an open top site, i.e. is "full".
      * @throws java.lang.IndexOutOfBoundsException if site indices not in {1, ..., N}.
@@ -84,8 +432,301 @@ public class Percolation {
         if (i < 1 || i > this.N || j < 1 || j > this.N) {
             throw new IndexOutOfBoundsException("index out of bounds!");
         } else {  
-            return graph.connected(matrixToList(i, j), this.top);
+            return this.full != null ? this.fullBit(i, j) : (this.flags(graph.find(matrixToList(i, j))) & TOP) != 0;
+        }
+    }
+
+    /**
+     * Checks to see if the site with the given flat index is full. A closed site is its own
+     * component and carries no flags, so this needs no open check.
+     * @throws java.lang.IndexOutOfBoundsException if site not in {0, ..., N^2-1}.
+     * @param site the flat index of the site to check.
+     * @return true if full, false otherwise.
+     */
+
+    public boolean isFull(int site) {
+        this.checkSite(site);
+        if (this.full != null) {
+            return this.fullBit(site / this.N + 1, site % this.N + 1);
+        }
+        return (this.flags(graph.find(site)) & TOP) != 0;
+    }
+
+    /**
+     * Starts keeping a bitset of the full sites, so that isFull becomes a single bit read. Sites that are
+     * full already are marked right away, in time proportional to N^2. Does nothing if the bitset is kept already.
+     * @throws java.lang.IllegalStateException if a checkpoint is active.
+     */
+
+    public void trackFullSites() {
+        if (this.full != null) {
+            return;
+        }
+        this.checkNoCheckpoint();
+        this.full = new long[this.grid.length];
+        for (int i = 1; i <= this.N; i++) {
+            for (int j = 1; j <= this.N; j++) {
+                if ((this.flags(graph.find(matrixToList(i, j))) & TOP) != 0) {
+                    this.full[i*this.rowWords + (j >>> 6)] |= 1L << j;
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts keeping a histogram of cluster sizes, so that the cluster queries take constant time. The
+     * clusters present already are counted right away, in time proportional to N^2. Does nothing if the
+     * histogram is kept already.
+     * @throws java.lang.IllegalStateException if a checkpoint is active.
+     */
+
+    public void trackClusters() {
+        if (this.clusterSizes != null) {
+            return;
+        }
+        this.checkNoCheckpoint();
+        this.clusterSizes = new int[this.N*this.N + 1];
+        for (int site = 0; site < this.N*this.N; site++) {
+            if (this.isOpen(site) && graph.find(site) == site) {
+                int size = graph.componentSize(site);
+                this.clusterSizes[size]++;
+                this.clusters++;
+                this.largest = Math.max(this.largest, size);
+            }
+        }
+    }
+
+    /**
+     * @throws java.lang.IllegalStateException unless trackClusters has been called.
+     * @return the number of sites in the largest cluster, or 0 if no site is open.
+     */
+
+    public int largestCluster() {
+        this.checkClusters();
+        return this.largest;
+    }
+
+    /**
+     * @throws java.lang.IllegalStateException unless trackClusters has been called.
+     * @return the number of clusters of open sites.
+     */
+
+    public int clusterCount() {
+        this.checkClusters();
+        return this.clusters;
+    }
+
+    /**
+     * @throws java.lang.IllegalStateException unless trackClusters has been called.
+     * @param size the cluster size, in {1, ..., N^2}.
+     * @return the number of clusters with exactly that many sites.
+     */
+
+    public int clusterCount(int size) {
+        this.checkClusters();
+        if (size < 1 || size > this.N*this.N) {
+            throw new IndexOutOfBoundsException("cluster size out of bounds!");
+        }
+        return this.clusterSizes[size];
+    }
+
+    /**
+     * Gives a copy of the cluster size histogram.
+     * @throws java.lang.IllegalStateException unless trackClusters has been called.
+     * @return an array whose entry s is the number of clusters with s sites.
+     */
+
+    public int[] clusterSizeHistogram() {
+        this.checkClusters();
+        return this.clusterSizes.clone();
+    }
+
+    private void checkClusters() {
+        if (this.clusterSizes == null) {
+            throw new IllegalStateException("Cluster tracking is off; call trackClusters() first.");
+        }
+    }
+
+    /**
+     * Tracking started inside a checkpoint could not be rolled back, since the state it starts from is not logged.
+     */
+
+    private void checkNoCheckpoint() {
+        if (this.depth > 0) {
+            throw new IllegalStateException("Cannot start tracking while a checkpoint is active.");
+        }
+    }
+
+    /**
+     * Gives the full sites as a bitmap, for rendering.
+     * @return a BitSet with bit (i-1)*N + (j-1) set if site (i, j) is full.
+     */
+
+    public BitSet fullSites() {
+        BitSet sites = new BitSet(this.N*this.N);
+        for (int i = 1; i <= this.N; i++) {
+            for (int j = 1; j <= this.N; j++) {
+                if (this.full != null ? this.fullBit(i, j) : (this.flags(graph.find(matrixToList(i, j))) & TOP) != 0) {
+                    sites.set(matrixToList(i, j));
+                }
+            }
+        }
+        return sites;
+    }
+
+    /**
+     * Gives the number of open sites in the cluster containing the specified site.
+     * @throws java.lang.IndexOutOfBoundsException if site indices not in {1, ..., N}.
+     * @param i, j the index of the site to check.
+     * @return the size of the site's cluster, or 0 if the site is closed.
+     */
+
+    public int clusterSize(int i, int j) {
+        if (i < 1 || i > this.N || j < 1 || j > this.N) {
+            throw new IndexOutOfBoundsException("index out of bounds!");
+        } else if (!this.bit(i, j)) {
+            return 0;
+        } else {
+            return graph.componentSize(matrixToList(i, j));
+        }
+    }
+
+    /**
+     * Gives the number of open sites in the cluster containing the site with the given flat index.
+     * @throws java.lang.IndexOutOfBoundsException if site not in {0, ..., N^2-1}.
+     * @param site the flat index of the site to check.
+     * @return the size of the site's cluster, or 0 if the site is closed.
+     */
+
+    public int clusterSize(int site) {
+        return this.isOpen(site) ? graph.componentSize(site) : 0;
+    }
+
+    /**
+     * Closes every site again, returning the system to the state right after construction.
+     * Takes time proportional to N^2 but allocates nothing.
+     */
+
+    public void reset() {
+        Arrays.fill(this.grid, 0L);
+        Arrays.fill(this.flagBits, 0L);
+        if (this.full != null) {
+            Arrays.fill(this.full, 0L);
+        }
+        if (this.clusterSizes != null) {
+            Arrays.fill(this.clusterSizes, 0);
+            this.clusters = 0;
+            this.largest = 0;
+        }
+        this.graph.reset();
+        this.percolates = false;
+        this.undoSize = 0;
+        this.depth = 0;
+    }
+
+    /**
+     * Marks the current state of the system, so that a later rollback returns to it. Checkpoints nest.
+     * @throws java.lang.UnsupportedOperationException unless the system was built on a RollbackUF engine.
+     */
+
+    public void checkpoint() {
+        if (!(this.graph instanceof RollbackUF)) {
+            throw new UnsupportedOperationException("Checkpoints need a RollbackUF engine.");
+        }
+        if (this.undo == null) {
+            this.undo = new int[32];
+            this.marks = new int[4];
+        } else if (this.depth == this.marks.length) {
+            this.marks = Arrays.copyOf(this.marks, 2*this.depth);
+        }
+        ((RollbackUF) this.graph).checkpoint();
+        this.marks[this.depth++] = this.undoSize;
+    }
+
+    /**
+     * Closes every site opened since the most recent active checkpoint and undoes the unions and flag
+     * changes they caused, then discards that checkpoint. Entries of the undo log are pairs: an opened
+     * site with OPENED, a site marked full with FILLED, a component root with its previous flags,
+     * PERCOLATED with 0 when the system started to percolate, LARGEST with the previous largest cluster
+     * size, or MERGED and MERGED_WITH with the sizes of two clusters that were joined.
+     * @throws java.lang.IllegalStateException if there is no active checkpoint.
+     */
+
+    public void rollback() {
+        if (this.depth == 0) {
+            throw new IllegalStateException("No checkpoint to roll back to.");
+        }
+        ((RollbackUF) this.graph).rollback();
+        int mark = this.marks[--this.depth];
+        int mergedWith = 0;
+        while (this.undoSize > mark) {
+            int value = this.undo[--this.undoSize];
+            int index = this.undo[--this.undoSize];
+            if (index == PERCOLATED) {
+                this.percolates = false;
+            } else if (index == LARGEST) {
+                this.largest = value;
+            } else if (index == MERGED_WITH) {
+                mergedWith = value;
+            } else if (index == MERGED) {
+                this.clusterSizes[value]++;
+                this.clusterSizes[mergedWith]++;
+                this.clusterSizes[value + mergedWith]--;
+                this.clusters++;
+            } else if (value == OPENED) {
+                int i = index / this.N + 1;
+                int j = index % this.N + 1;
+                this.grid[i*this.rowWords + (j >>> 6)] &= ~(1L << j);
+                this.setFlags(index, 0);
+                if (this.clusterSizes != null) {
+                    this.clusterSizes[1]--;
+                    this.clusters--;
+                }
+            } else if (value == FILLED) {
+                int i = index / this.N + 1;
+                int j = index % this.N + 1;
+                this.full[i*this.rowWords + (j >>> 6)] &= ~(1L << j);
+            } else {
+                this.setFlags(index, value);
+            }
+        }
+    }
+
+    /**
+     * Pushes a pair onto the undo log, but only while a checkpoint is active.
+     */
+
+    private void log(int index, int value) {
+        if (this.depth == 0) {
+            return;
+        }
+        if (this.undoSize + 2 > this.undo.length) {
+            this.undo = Arrays.copyOf(this.undo, 2*this.undo.length);
         }
+        this.undo[this.undoSize++] = index;
+        this.undo[this.undoSize++] = value;
+    }
+
+    private void setPercolates() {
+        if (!this.percolates) {
+            this.percolates = true;
+            this.log(PERCOLATED, 0);
+        }
+    }
+
+    private void setLargest(int size) {
+        this.log(LARGEST, this.largest);
+        this.largest = size;
+    }
+
+    /**
+     * Gives the metrics of the engine, which also count the opened sites. Call <em>snapshot</em> on them to
+     * read the counts since the last reset, or <em>publish</em> to add them to the process-wide totals.
+     * @return the metrics, or null if they are disabled or the engine keeps none.
+     */
+
+    public UnionFindMetrics metrics() {
+        return this.metrics;
     }
 
     /**
@@ -94,19 +735,82 @@ public class Percolation {
      */
 
     public boolean percolates() {
-        for (int j = 1; j < this.N+1; j++) {
-            if (grid[this.N][j]) {
-                if (this.isFull(this.N, j)) {
-                    graph.union(matrixToList(this.N, j), this.bottom);
-                }
+        return this.percolates;
+    }
+
+    /**
+     * Reads the open bit of a site of the padded grid; the shift by j uses only its low six bits.
+     * @param i, j the index of the site, each in {0, ..., N+1}.
+     * @return true if the site is open, false otherwise.
+     */
+
+    private boolean bit(int i, int j) {
+        return (this.grid[i*this.rowWords + (j >>> 6)] & (1L << j)) != 0;
+    }
+
+    private boolean fullBit(int i, int j) {
+        return (this.full[i*this.rowWords + (j >>> 6)] & (1L << j)) != 0;
+    }
+
+    /**
+     * Marks the given open site full, then every open site that is not full yet and can be reached from it.
+     * The stack holds (i, j) pairs; the closed border stops the fill at the edge of the grid.
+     * @param i, j the index of a site that has just joined a component touching the top row.
+     */
+
+    private void fill(int i, int j) {
+        if (this.fillStack == null) {
+            this.fillStack = new int[64];
+        }
+        int[] stack = this.fillStack;
+        int top = 0;
+        this.markFull(i, j);
+        stack[top++] = i;
+        stack[top++] = j;
+        while (top > 0) {
+            int q = stack[--top];
+            int p = stack[--top];
+            if (stack.length < top + 8) {
+                stack = Arrays.copyOf(stack, 2*stack.length);
+                this.fillStack = stack;
             }
-        }  
-        return graph.connected(this.top, this.bottom);
+            if (this.bit(p-1, q) && !this.fullBit(p-1, q)) {
+                this.markFull(p-1, q);
+                stack[top++] = p-1;
+                stack[top++] = q;
+            }
+            if (this.bit(p+1, q) && !this.fullBit(p+1, q)) {
+                this.markFull(p+1, q);
+                stack[top++] = p+1;
+                stack[top++] = q;
+            }
+            if (this.bit(p, q-1) && !this.fullBit(p, q-1)) {
+                this.markFull(p, q-1);
+                stack[top++] = p;
+                stack[top++] = q-1;
+            }
+            if (this.bit(p, q+1) && !this.fullBit(p, q+1)) {
+                this.markFull(p, q+1);
+                stack[top++] = p;
+                stack[top++] = q+1;
+            }
+        }
+    }
+
+    private void markFull(int i, int j) {
+        this.full[i*this.rowWords + (j >>> 6)] |= 1L << j;
+        this.log(matrixToList(i, j), FILLED);
+    }
+
+    private void checkSite(int site) {
+        if (site < 0 || site >= this.N*this.N) {
+            throw new IndexOutOfBoundsException("index out of bounds!");
+        }
     }
 
     /**
      * Used to convert between the percolation system, which is a grid, and a graph with
-     * vertices indexed by the sites represented by the WeightedUnionFindUF structure.  
+     * vertices indexed by the sites represented by the UnionFind structure.  
      * @param i, j the index of the site.
      * @return the index of the corresponding vertex. 
      */
@@ -117,28 +821,94 @@ public class Percolation {
 
     /**
      * Connects all neighboring open sites to a given site, only called when a new site is opened.
-     * @throws java.lang.IndexOutOfBoundsException if site indices not in {1, ..., N}.
+     * The caller has already checked the indices, so p and q are in {1, ..., N}.
      * @param p, q the central site to which we connect other open sites.
+     * @param site the flat index of the same site.
      */
 
-    private void connectNeighbors(int p, int q) {
-        if (p < 1 || p > this.N || q < 1 || q > this.N) {
-            throw new IndexOutOfBoundsException("index out of bounds!");
-        } else {
-            for (int i = p-1; (i < p+2); i++) {
-                if (grid[i][q]) {
-                    graph.union(matrixToList(p, q), matrixToList(i, q));
-                }
-            }
-            for (int j = q-1; j < q+2; j++) {
-                if (grid[p][j]) {
-                    graph.union(matrixToList(p, q), matrixToList(p, j));
-                }
-            }
-            if (p == 1) {
-                graph.union(this.top, matrixToList(p, q));
+    private void connectNeighbors(int p, int q, int site) {
+        int word = p*this.rowWords + (q >>> 6);
+        long mask = 1L << q;
+        if ((grid[word - this.rowWords] & mask) != 0) {
+            merge(site, site - this.N);
+        }
+        if ((grid[word + this.rowWords] & mask) != 0) {
+            merge(site, site + this.N);
+        }
+        if (bit(p, q-1)) {
+            merge(site, site - 1);
+        }
+        if (bit(p, q+1)) {
+            merge(site, site + 1);
+        }
+    }
+
+    /**
+     * Unions the components of two sites and gives the resulting root the combined top and bottom
+     * flags of both components. Records that the system percolates once a root carries both flags,
+     * and moves one cluster from each of the two old sizes to their sum if the histogram is kept.
+     * @param a, b the two sites to connect.
+     */
+
+    private void merge(int a, int b) {
+        int rootA = graph.find(a);
+        int rootB = graph.find(b);
+        if (rootA != rootB) {
+            this.join(rootA, rootB);
+        }
+    }
+
+    /**
+     * Links a site that has just been opened, and is still a component of its own, to the root of a
+     * component holding a site of the same row. The site's flags are those of its row, which the root
+     * carries already, so unless cluster sizes are tracked only the engine has work to do.
+     * @param root a root.
+     * @param site the newly opened site.
+     * @return the root of the joined component.
+     */
+
+    private int extend(int root, int site) {
+        if (this.clusterSizes != null) {
+            return this.join(root, site);
+        }
+        int newRoot = graph.link(root, site);
+        if (newRoot != root) {
+            this.log(newRoot, this.flags(newRoot));
+            this.setFlags(newRoot, this.flags(root));
+        }
+        return newRoot;
+    }
+
+    /**
+     * Links two distinct roots and does the bookkeeping of merge: the combined flags, percolation and
+     * the cluster size histogram.
+     * @param rootA, rootB the two roots.
+     * @return the root of the joined component.
+     */
+
+    private int join(int rootA, int rootB) {
+        int flags = this.flags(rootA) | this.flags(rootB);
+        if (this.clusterSizes != null) {
+            int sizeA = graph.rootSize(rootA);
+            int sizeB = graph.rootSize(rootB);
+            this.clusterSizes[sizeA]--;
+            this.clusterSizes[sizeB]--;
+            this.clusterSizes[sizeA + sizeB]++;
+            this.clusters--;
+            this.log(MERGED, sizeA);
+            this.log(MERGED_WITH, sizeB);
+            if (sizeA + sizeB > this.largest) {
+                this.setLargest(sizeA + sizeB);
             }
         }
+        int root = graph.link(rootA, rootB);
+        this.log(root, this.flags(root));
+        this.setFlags(root, flags);
+        if (flags == (TOP | BOTTOM)) {
+            this.setPercolates();
+        }
+        return root;
     }
+
     public static void main(String[] args) { };
 }
@@ -0,0 +1,226 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ *  The <tt>PercolationBenchmark</tt> class measures the Percolation and PercolationStats data
+ *  types, so that changes to <em>connectNeighbors</em>, <em>percolates</em> and friends can be
+ *  compared before and after. It reports, per grid size and opening order:
+ *  <ul>
+ *  <li><em>open</em>: the time per call of opening all N^2 sites one by one;</li>
+ *  <li><em>isFull</em>: the time per call of querying random sites of a half-open grid;</li>
+ *  <li><em>open+perc</em>: the time per step of opening all sites and calling <em>percolates</em>
+ *  after every one of them, as PercolationStats does. A loop of bare <em>percolates</em> calls
+ *  would measure nothing, since the JIT hoists the field read out of the loop;</li>
+ *  <li><em>trial</em>: the wall time of one PercolationStats trial (random order only).</li>
+ *  </ul>
+ *  Next to every time it prints the bytes allocated per operation by the measuring thread,
+ *  the same figure JMH reports as gc.alloc.rate.norm. The opening orders are <em>random</em>
+ *  (a uniform permutation), <em>rows</em> (row-major) and <em>serpentine</em>, an adversarial
+ *  order that first opens every other column, building N/2 tall clusters, and then joins them
+ *  one at a time through alternating ends into a single snake, so that every join merges two
+ *  large trees.
+ *  <p>
+ *  Each measurement is repeated after two warm-up rounds so that the JIT has compiled the
+ *  code being measured, and the mean of three rounds is printed. The grid sizes default to
+ *  64, 512, 2048 and 8192; the largest needs about 2 GB of heap (java -Xmx4g).
+ */
+
+public class PercolationBenchmark {
+
+    private static final int WARMUP = 2;
+    private static final int ROUNDS = 3;
+    private static final String[] PATTERNS = {"random", "rows", "serpentine"};
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // results are folded into this field so that the JIT cannot drop the measured calls.
+    private static volatile long sink;
+
+    /**
+     * Builds the order in which the sites of an NxN grid are opened.
+     * @param pattern one of "random", "rows" or "serpentine".
+     * @param N the size of the grid.
+     * @param random the source for the random order.
+     * @return a permutation of the flat site indices {0, ..., N^2-1}.
+     */
+
+    private static int[] order(String pattern, int N, RandomSource random) {
+        int[] order = new int[N*N];
+        int k = 0;
+        if (pattern.equals("random")) {
+            for (int l = 0; l < N*N; l++) {
+                int r = random.uniform(l + 1);
+                order[l] = order[r];
+                order[r] = l;
+            }
+            return order;
+        } else if (pattern.equals("rows")) {
+            for (int l = 0; l < N*N; l++) {
+                order[l] = l;
+            }
+            return order;
+        }
+        boolean[] taken = new boolean[N*N];
+        for (int j = 0; j < N; j += 2) {
+            for (int i = 0; i < N; i++) {
+                order[k++] = i*N + j;
+                taken[i*N + j] = true;
+            }
+        }
+        for (int j = 1; j < N; j += 2) {
+            int site = ((j/2) % 2 == 0 ? N - 1 : 0)*N + j;
+            order[k++] = site;
+            taken[site] = true;
+        }
+        for (int site = 0; site < N*N; site++) {
+            if (!taken[site]) {
+                order[k++] = site;
+            }
+        }
+        return order;
+    }
+
+    private static long allocated() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void report(String benchmark, int N, String pattern, long ops, long nanos, long bytes) {
+        System.out.printf("%-10s N=%-5d %-10s %12.2f ns/op %10.3f B/op%n",
+                          benchmark, N, pattern, (double) nanos/ops, (double) bytes/ops);
+    }
+
+    /**
+     * Opens all sites in the given order, WARMUP + ROUNDS times, resetting the system in between.
+     */
+
+    private static void benchOpen(Percolation g, int N, String pattern, int[] order) {
+        long nanos = 0;
+        long bytes = 0;
+        for (int round = 0; round < WARMUP + ROUNDS; round++) {
+            g.reset();
+            long b0 = allocated();
+            long t0 = System.nanoTime();
+            for (int site : order) {
+                g.open(site);
+            }
+            long t1 = System.nanoTime();
+            long b1 = allocated();
+            if (round >= WARMUP) {
+                nanos += t1 - t0;
+                bytes += b1 - b0;
+            }
+        }
+        report("open", N, pattern, (long) ROUNDS*order.length, nanos, bytes);
+    }
+
+    /**
+     * Queries isFull on the system with the first half of the order open.
+     */
+
+    private static void benchQueries(Percolation g, int N, String pattern, int[] order, int[] queries) {
+        g.reset();
+        for (int l = 0; l < order.length/2; l++) {
+            g.open(order[l]);
+        }
+        long nanos = 0;
+        long bytes = 0;
+        long acc = 0;
+        for (int round = 0; round < WARMUP + ROUNDS; round++) {
+            long b0 = allocated();
+            long t0 = System.nanoTime();
+            for (int site : queries) {
+                if (g.isFull(site)) {
+                    acc++;
+                }
+            }
+            long t1 = System.nanoTime();
+            long b1 = allocated();
+            if (round >= WARMUP) {
+                nanos += t1 - t0;
+                bytes += b1 - b0;
+            }
+        }
+        report("isFull", N, pattern, (long) ROUNDS*queries.length, nanos, bytes);
+        sink += acc;
+    }
+
+    /**
+     * Opens all sites in the given order and checks percolates after each one.
+     */
+
+    private static void benchPercolates(Percolation g, int N, String pattern, int[] order) {
+        long nanos = 0;
+        long bytes = 0;
+        long acc = 0;
+        for (int round = 0; round < WARMUP + ROUNDS; round++) {
+            g.reset();
+            long b0 = allocated();
+            long t0 = System.nanoTime();
+            for (int site : order) {
+                g.open(site);
+                if (g.percolates()) {
+                    acc++;
+                }
+            }
+            long t1 = System.nanoTime();
+            long b1 = allocated();
+            if (round >= WARMUP) {
+                nanos += t1 - t0;
+                bytes += b1 - b0;
+            }
+        }
+        report("open+perc", N, pattern, (long) ROUNDS*order.length, nanos, bytes);
+        sink += acc;
+    }
+
+    /**
+     * Times single PercolationStats trials, including the allocation of their workspace.
+     */
+
+    private static void benchTrial(int N) {
+        long nanos = 0;
+        long bytes = 0;
+        double acc = 0;
+        for (int round = 0; round < WARMUP + ROUNDS; round++) {
+            long b0 = allocated();
+            long t0 = System.nanoTime();
+            acc += new PercolationStats(N, 1, round).mean();
+            long t1 = System.nanoTime();
+            long b1 = allocated();
+            if (round >= WARMUP) {
+                nanos += t1 - t0;
+                bytes += b1 - b0;
+            }
+        }
+        report("trial", N, "random", ROUNDS, nanos, bytes);
+        sink += (long) acc;
+    }
+
+    /**
+    * takes an optional list of grid sizes from user input and runs every benchmark for each of them.
+    */
+
+    public static void main(String[] args) {
+        int[] sizes = {64, 512, 2048, 8192};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int k = 0; k < args.length; k++) {
+                sizes[k] = Integer.parseInt(args[k]);
+            }
+        }
+        RandomSource random = new SplittableSource(42);
+        for (int N : sizes) {
+            Percolation g = new Percolation(N);
+            int[] queries = new int[Math.min(N*N, 1 << 20)];
+            random.fillUniform(queries, N*N);
+            for (String pattern : PATTERNS) {
+                int[] order = order(pattern, N, random);
+                benchOpen(g, N, pattern, order);
+                benchPercolates(g, N, pattern, order);
+                benchQueries(g, N, pattern, order, queries);
+            }
+            g = null;
+            benchTrial(N);
+        }
+    }
+}
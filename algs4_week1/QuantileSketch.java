@@ -0,0 +1,251 @@
+import java.util.Arrays;
+
+/**
+ *  The <tt>QuantileSketch</tt> class estimates the quantiles of a stream of values in bounded
+ *  memory, so the values themselves never have to be stored or sorted.
+ *  <p>
+ *  This implementation is a merging t-digest. The values are summarized by centroids, each a
+ *  mean and a weight, kept in increasing order of their means. New values go into a buffer;
+ *  when the buffer is full it is sorted together with the centroids and a single pass merges
+ *  neighbors as long as the merged centroid spans at most one unit of the scale function
+ *  <em>k(q) = compression/(2 pi) * asin(2q - 1)</em>. The scale function is steep near q = 0
+ *  and q = 1, so the centroids near the tails stay small and extreme quantiles such as p01 and
+ *  p99 are estimated far more accurately than the median needs to be. There are at most about
+ *  <em>compression</em> centroids, the buffer holds 5 times as many values, and adding a value
+ *  takes amortized time proportional to the logarithm of the buffer size.
+ *  <p>
+ *  Sketches of separate streams, e.g. of the trials run by different workers, can be merged:
+ *  the centroids of one are added to the other as weighted values. A sketch only depends on the
+ *  values and weights added to it and the order in which they were added, so merging the same
+ *  sketches in the same order always gives the same result.
+ *  <p>
+ *  See T. Dunning and O. Ertl, <i>Computing extremely accurate quantiles using t-digests</i>, 2019.
+ */
+
+public class QuantileSketch {
+
+    private double compression;
+    private double[] means;
+    private double[] weights;
+    private int centroids;
+    private double[] bufferMeans;
+    private double[] bufferWeights;
+    private double[] auxMeans;
+    private double[] auxWeights;
+    private int buffered;
+    private int capacity;
+    private double total;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Initializes an empty sketch with compression 200.
+     */
+
+    public QuantileSketch() {
+        this(200);
+    }
+
+    /**
+     * Initializes an empty sketch.
+     * @throws java.lang.IllegalArgumentException if compression < 20
+     * @param compression bounds the number of centroids; larger is more accurate.
+     */
+
+    public QuantileSketch(double compression) {
+        if (!(compression >= 20)) {
+            throw new IllegalArgumentException("Must have compression >= 20");
+        }
+        this.compression = compression;
+        int size = (int) Math.ceil(compression) + 10;
+        this.means = new double[size];
+        this.weights = new double[size];
+        this.capacity = 5*size;
+        this.bufferMeans = new double[this.capacity + size];
+        this.bufferWeights = new double[this.capacity + size];
+        this.auxMeans = new double[this.capacity + size];
+        this.auxWeights = new double[this.capacity + size];
+    }
+
+    /**
+     * Adds a value to the stream.
+     * @param x the value to add.
+     */
+
+    public void add(double x) {
+        this.add(x, 1);
+    }
+
+    /**
+     * Adds a value standing for weight many values.
+     * @throws java.lang.IllegalArgumentException if x is NaN or weight is not positive.
+     * @param x the value to add.
+     * @param weight the weight of the value.
+     */
+
+    public void add(double x, double weight) {
+        if (Double.isNaN(x) || !(weight > 0)) {
+            throw new IllegalArgumentException("Must have a number and a positive weight");
+        }
+        if (this.buffered == this.capacity) {
+            this.compress();
+        }
+        this.bufferMeans[this.buffered] = x;
+        this.bufferWeights[this.buffered++] = weight;
+        this.total += weight;
+        this.min = Math.min(this.min, x);
+        this.max = Math.max(this.max, x);
+    }
+
+    /**
+     * Adds the values summarized by another sketch. The other sketch is compacted first, i.e. its buffered
+     * values are merged into its centroids, as a call to quantile would do; this changes its state, and can
+     * shift its later estimates slightly, but not the values it summarizes.
+     * @param other the sketch to merge into this one.
+     */
+
+    public void merge(QuantileSketch other) {
+        other.compress();
+        for (int i = 0; i < other.centroids; i++) {
+            this.add(other.means[i], other.weights[i]);
+        }
+        this.min = Math.min(this.min, other.min);
+        this.max = Math.max(this.max, other.max);
+    }
+
+    /**
+     * @return the total weight of the values added so far.
+     */
+
+    public double count() {
+        return this.total;
+    }
+
+    /**
+     * Estimates a quantile, interpolating linearly between the centers of neighboring centroids and
+     * towards the smallest and largest values at the ends.
+     * @throws java.lang.IllegalArgumentException if q is not in [0, 1].
+     * @param q the quantile, e.g. 0.99.
+     * @return the estimated quantile, or NaN if no values were added.
+     */
+
+    public double quantile(double q) {
+        if (!(q >= 0 && q <= 1)) {
+            throw new IllegalArgumentException("Must have 0 <= q <= 1");
+        }
+        this.compress();
+        if (this.centroids == 0) {
+            return Double.NaN;
+        }
+        double target = q*this.total;
+        if (target <= this.weights[0]/2) {
+            return interpolate(this.min, this.means[0], 0, this.weights[0]/2, target);
+        }
+        double center = this.weights[0]/2;
+        for (int i = 1; i < this.centroids; i++) {
+            double next = center + (this.weights[i-1] + this.weights[i])/2;
+            if (target <= next) {
+                return interpolate(this.means[i-1], this.means[i], center, next, target);
+            }
+            center = next;
+        }
+        return interpolate(this.means[this.centroids-1], this.max, center, this.total, target);
+    }
+
+    private static double interpolate(double a, double b, double from, double to, double at) {
+        return to > from ? a + (b - a)*(at - from)/(to - from) : b;
+    }
+
+    /**
+     * Sorts the buffer together with the centroids and merges neighbors as far as the scale function allows.
+     */
+
+    private void compress() {
+        if (this.buffered == 0) {
+            return;
+        }
+        int n = this.buffered + this.centroids;
+        if (n > this.bufferMeans.length) {
+            this.bufferMeans = Arrays.copyOf(this.bufferMeans, n);
+            this.bufferWeights = Arrays.copyOf(this.bufferWeights, n);
+            this.auxMeans = new double[n];
+            this.auxWeights = new double[n];
+        }
+        System.arraycopy(this.means, 0, this.bufferMeans, this.buffered, this.centroids);
+        System.arraycopy(this.weights, 0, this.bufferWeights, this.buffered, this.centroids);
+        this.sort(n);
+        int k = 0;
+        double before = 0;
+        double limit = this.total*q(k(0) + 1);
+        this.means[0] = this.bufferMeans[0];
+        this.weights[0] = this.bufferWeights[0];
+        for (int i = 1; i < n; i++) {
+            double w = this.bufferWeights[i];
+            if (before + this.weights[k] + w <= limit) {
+                this.weights[k] += w;
+                this.means[k] += (this.bufferMeans[i] - this.means[k])*w/this.weights[k];
+            } else {
+                before += this.weights[k];
+                limit = this.total*q(k(before/this.total) + 1);
+                k++;
+                if (k == this.means.length) {
+                    this.means = Arrays.copyOf(this.means, 2*k);
+                    this.weights = Arrays.copyOf(this.weights, 2*k);
+                }
+                this.means[k] = this.bufferMeans[i];
+                this.weights[k] = w;
+            }
+        }
+        this.centroids = k + 1;
+        this.buffered = 0;
+    }
+
+    private double k(double q) {
+        return this.compression/(2*Math.PI)*Math.asin(2*q - 1);
+    }
+
+    private double q(double k) {
+        double x = Math.min(Math.PI/2, 2*Math.PI*k/this.compression);
+        return (Math.sin(x) + 1)/2;
+    }
+
+    /**
+     * Sorts the first n values of the buffer and their weights by value, with a bottom-up mergesort that
+     * passes the values back and forth between the buffer and the aux arrays, in time proportional to
+     * n log n. The buffer and aux arrays trade places whenever the sorted values end up in the aux arrays.
+     */
+
+    private void sort(int n) {
+        double[] a = this.bufferMeans;
+        double[] w = this.bufferWeights;
+        double[] b = this.auxMeans;
+        double[] v = this.auxWeights;
+        for (int width = 1; width < n; width *= 2) {
+            for (int lo = 0; lo < n; lo += 2*width) {
+                int mid = Math.min(lo + width, n);
+                int hi = Math.min(lo + 2*width, n);
+                int i = lo;
+                int j = mid;
+                for (int k = lo; k < hi; k++) {
+                    if (j == hi || (i < mid && a[i] <= a[j])) {
+                        b[k] = a[i];
+                        v[k] = w[i++];
+                    } else {
+                        b[k] = a[j];
+                        v[k] = w[j++];
+                    }
+                }
+            }
+            double[] t = a;
+            a = b;
+            b = t;
+            t = w;
+            w = v;
+            v = t;
+        }
+        this.bufferMeans = a;
+        this.bufferWeights = w;
+        this.auxMeans = b;
+        this.auxWeights = v;
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ *  The <tt>RandomSource</tt> interface is the source of randomness for the code in this
+ *  directory. Unlike StdRandom, which draws from one shared, synchronized java.util.Random,
+ *  a RandomSource belongs to a single thread and can be created from a seed, so every trial
+ *  of a simulation can get its own stream and be replayed exactly.
+ *  <p>
+ *  Implementations only have to supply <em>nextLong</em> and <em>split</em>; the other
+ *  methods are derived from <em>nextLong</em>. Implementations are not thread-safe: give each
+ *  thread its own source, e.g. by splitting one.
+ */
+
+public interface RandomSource {
+
+    /**
+     * @return the next 64 uniformly random bits.
+     */
+
+    long nextLong();
+
+    /**
+     * Returns a new source whose stream does not overlap this one's in practice, for handing to
+     * another thread. This source is advanced as well.
+     * @return the new source.
+     */
+
+    RandomSource split();
+
+    /**
+     * Returns a uniformly random integer in [0, n). This uses Lemire's multiply-and-shift method,
+     * which only needs a division in the rare case that a draw has to be rejected.
+     * @throws java.lang.IllegalArgumentException if n <= 0
+     * @param n the number of possible values.
+     * @return an integer in {0, ..., n-1}.
+     */
+
+    default int uniform(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be positive.");
+        }
+        long m = (nextLong() >>> 32)*n;
+        if (Integer.compareUnsigned((int) m, n) < 0) {
+            int threshold = Integer.remainderUnsigned(-n, n);
+            while (Integer.compareUnsigned((int) m, threshold) < 0) {
+                m = (nextLong() >>> 32)*n;
+            }
+        }
+        return (int) (m >>> 32);
+    }
+
+    /**
+     * @return a uniformly random double in [0, 1), with 53 random bits.
+     */
+
+    default double uniform() {
+        return (nextLong() >>> 11)*0x1.0p-53;
+    }
+
+    /**
+     * Fills an array with uniformly random integers in [0, bound).
+     * @throws java.lang.IllegalArgumentException if bound <= 0
+     * @param out the array to fill.
+     * @param bound the number of possible values.
+     */
+
+    default void fillUniform(int[] out, int bound) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = uniform(bound);
+        }
+    }
+}
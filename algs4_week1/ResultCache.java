@@ -0,0 +1,154 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ *  The <tt>ResultCache</tt> class keeps the per-trial results of PercolationStats runs in a
+ *  local directory, so that a run that was done before is read back instead of simulated.
+ *  <p>
+ *  A run is identified by a key spelling out everything its trials depend on: the grid size,
+ *  the master seed, the lattice, site or bond percolation, an id naming the generator of the
+ *  random sources and ENGINE_VERSION, which must be bumped whenever a change makes the same
+ *  trial give a different result. The file of a key is named after the SHA-256 hash of the key and repeats the key in
+ *  its header, so a hash collision reads as a miss. The body holds, for each trial in order, the
+ *  number of sites or bonds open when the system percolated, as a 4-byte int; the fraction is
+ *  that number divided by the number of sites or bonds, which gives back exactly the double the
+ *  trial returned.
+ *  <p>
+ *  Since every trial draws from its own stream, seeded from the master seed and its index, the
+ *  first T trials of a run do not depend on how many trials the run has. A run of T trials can
+ *  therefore use any cached prefix and only simulate the trials after it, and a shorter run is
+ *  served from the prefix of a longer one. Files are written to a temporary file and moved into
+ *  place, so readers never see a partial file, and a file is only replaced by a longer one.
+ *  Unreadable files count as misses, and so do files whose trial count does not match their length.
+ *  <p>
+ *  The generator id is given by the caller, since two generators can create sources of the same
+ *  class from the same seed and still draw different streams, e.g. <tt>SplittableSource::new</tt>
+ *  and <tt>s -> new SplittableSource(s ^ k)</tt>. Every generator must get its own id.
+ */
+
+public class ResultCache {
+
+    /**
+     * The version of the trial engine, part of every key.
+     */
+
+    public static final int ENGINE_VERSION = 1;
+
+    private static final int MAGIC = 0x50534331;
+
+    private Path directory;
+
+    /**
+     * Opens the cache in the given directory, creating the directory if needed.
+     * @throws java.io.UncheckedIOException if the directory cannot be created.
+     * @param directory the directory holding the cache files.
+     */
+
+    public ResultCache(Path directory) {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * Builds the key of a run.
+     * @param N the size of the grid.
+     * @param seed the master seed.
+     * @param lattice the lattice joining the sites.
+     * @param bonds true for bond percolation, false for site percolation.
+     * @param generator the id of the generator of the trials' random sources, e.g. "SplittableSource".
+     * @return the key.
+     */
+
+    public static String key(int N, long seed, Lattice lattice, boolean bonds, String generator) {
+        return "engine=" + ENGINE_VERSION + ",N=" + N + ",seed=" + seed + ",lattice=" + lattice
+            + ",mode=" + (bonds ? "bond" : "site") + ",generator=" + generator;
+    }
+
+    /**
+     * Reads the stored results of a key.
+     * @param key the key of the run.
+     * @return the open counts of the stored trials, in trial order, or null if there are none.
+     */
+
+    public int[] load(String key) {
+        Path file = this.file(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)))) {
+            if (in.readInt() != MAGIC || !in.readUTF().equals(key)) {
+                return null;
+            }
+            int count = in.readInt();
+            if (count < 0 || (long) count*4 != in.available()) {
+                return null;
+            }
+            int[] counts = new int[count];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = in.readInt();
+            }
+            return counts;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stores the results of a key, unless at least as many trials are stored already.
+     * @throws java.io.UncheckedIOException if the file cannot be written.
+     * @param key the key of the run.
+     * @param counts the open counts of the trials, in trial order.
+     */
+
+    public void store(String key, int[] counts) {
+        int[] stored = this.load(key);
+        if (stored != null && stored.length >= counts.length) {
+            return;
+        }
+        Path file = this.file(key);
+        try {
+            Path temp = Files.createTempFile(this.directory, file.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeUTF(key);
+                out.writeInt(counts.length);
+                for (int count : counts) {
+                    out.writeInt(count);
+                }
+            } catch (IOException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path file(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte b : hash) {
+                name.append(String.format("%02x", b));
+            }
+            return this.directory.resolve(name.append(".trials").toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+import java.util.Arrays;
+
+/**
+ *  The <tt>RollbackUF</tt> class is a union-find engine whose unions can be undone. It
+ *  supports the <em>checkpoint</em> and <em>rollback</em> operations: a rollback undoes
+ *  every union made since the most recent checkpoint that has not been rolled back yet,
+ *  and checkpoints can be nested.
+ *  <p>
+ *  This implementation uses weighted quick union by size without path compression, so a
+ *  union only ever changes the parent of one root and the size of another. While a
+ *  checkpoint is active every union pushes the root it attached onto an undo log, and a
+ *  rollback pops the log back to the checkpoint, restoring that root and the size of its
+ *  parent. Without path compression <em>find</em> takes logarithmic time in the worst case,
+ *  while <em>checkpoint</em> takes constant time and <em>rollback</em> takes time
+ *  proportional to the number of unions it undoes, regardless of the number of elements.
+ *  Like PathHalvingUF it records UnionFindMetrics when they are enabled; since nothing
+ *  compresses the paths, the longest find path is the height of the tallest tree found.
+ *  <p>
+ *  For additional documentation, see <a href="http://algs4.cs.princeton.edu/15uf">Section 1.5</a> of
+ *  <i>Algorithms, 4th Edition</i> by Robert Sedgewick and Kevin Wayne.
+ */
+
+public class RollbackUF implements UnionFind {
+
+    private final int[] parent;
+    private final int[] size;
+    private int[] log;
+    private int logSize;
+    private int[] marks;
+    private int depth;
+    private final UnionFindMetrics metrics = UnionFindMetrics.create();
+
+    /**
+     * Initializes an empty union-find data structure with N isolated elements 0 through N-1.
+     * @throws java.lang.IllegalArgumentException if N < 0
+     * @param N the number of elements.
+     */
+
+    public RollbackUF(int N) {
+        if (N < 0) {
+            throw new IllegalArgumentException("Must have N >= 0");
+        }
+        this.parent = new int[N];
+        this.size = new int[N];
+        this.log = new int[16];
+        this.marks = new int[4];
+        this.reset();
+    }
+
+    public int size() {
+        return this.parent.length;
+    }
+
+    public int find(int p) {
+        int length = 0;
+        while (p != parent[p]) {
+            p = parent[p];
+            if (UnionFindMetrics.ENABLED) {
+                length++;
+            }
+        }
+        if (UnionFindMetrics.ENABLED) {
+            this.metrics.find(length);
+        }
+        return p;
+    }
+
+    public int componentSize(int p) {
+        return size[find(p)];
+    }
+
+    public int rootSize(int root) {
+        return size[root];
+    }
+
+    public boolean connected(int p, int q) {
+        if (UnionFindMetrics.ENABLED) {
+            this.metrics.connected();
+        }
+        return find(p) == find(q);
+    }
+
+    /**
+     * Merges the components containing p and q, attaching the smaller tree below the larger one,
+     * and logs the attached root if a checkpoint is active.
+     * @param p, q the two elements.
+     * @return the root of the merged component.
+     */
+
+    public int union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        return rootP == rootQ ? rootP : link(rootP, rootQ);
+    }
+
+    public int link(int rootP, int rootQ) {
+        if (UnionFindMetrics.ENABLED) {
+            this.metrics.union();
+        }
+        if (size[rootP] < size[rootQ]) {
+            int temp = rootP;
+            rootP = rootQ;
+            rootQ = temp;
+        }
+        parent[rootQ] = rootP;
+        size[rootP] += size[rootQ];
+        if (this.depth > 0) {
+            if (this.logSize == this.log.length) {
+                this.log = Arrays.copyOf(this.log, 2*this.logSize);
+            }
+            this.log[this.logSize++] = rootQ;
+        }
+        return rootP;
+    }
+
+    /**
+     * Marks the current state, so that a later rollback returns to it.
+     */
+
+    public void checkpoint() {
+        if (this.depth == this.marks.length) {
+            this.marks = Arrays.copyOf(this.marks, 2*this.depth);
+        }
+        this.marks[this.depth++] = this.logSize;
+    }
+
+    /**
+     * Undoes every union made since the most recent active checkpoint, and discards that checkpoint.
+     * @throws java.lang.IllegalStateException if there is no active checkpoint.
+     */
+
+    public void rollback() {
+        if (this.depth == 0) {
+            throw new IllegalStateException("No checkpoint to roll back to.");
+        }
+        int mark = this.marks[--this.depth];
+        while (this.logSize > mark) {
+            int child = this.log[--this.logSize];
+            size[parent[child]] -= size[child];
+            parent[child] = child;
+        }
+    }
+
+    /**
+     * @return the number of active checkpoints.
+     */
+
+    public int checkpoints() {
+        return this.depth;
+    }
+
+    /**
+     * Makes every element its own root again and discards all checkpoints.
+     */
+
+    public void reset() {
+        for (int i = 0; i < this.parent.length; i++) {
+            this.parent[i] = i;
+            this.size[i] = 1;
+        }
+        this.logSize = 0;
+        this.depth = 0;
+        if (UnionFindMetrics.ENABLED) {
+            this.metrics.publish();
+        }
+    }
+
+    public UnionFindMetrics metrics() {
+        return this.metrics;
+    }
+}
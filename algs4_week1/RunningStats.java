@@ -0,0 +1,77 @@
+/**
+ *  The <tt>RunningStats</tt> class keeps the count, mean and variance of a stream of
+ *  values in constant memory, so the values themselves never have to be stored.
+ *  <p>
+ *  This implementation uses Welford's method: each new value moves the mean by its
+ *  deviation divided by the count, and adds the product of its deviations from the old
+ *  and the new mean to the sum of squared deviations. Unlike the textbook
+ *  sum-of-squares formula it does not lose precision when the variance is small
+ *  compared to the mean. Every operation takes constant time.
+ *  <p>
+ *  See B. P. Welford, <i>Note on a method for calculating corrected sums of squares
+ *  and products</i>, Technometrics 4(3), 1962.
+ */
+
+public class RunningStats {
+
+    private long count;
+    private double mean;
+    private double squares;
+
+    /**
+     * Adds a value to the stream.
+     * @param x the value to add.
+     */
+
+    public void add(double x) {
+        this.count++;
+        double delta = x - this.mean;
+        this.mean += delta/this.count;
+        this.squares += delta*(x - this.mean);
+    }
+
+    /**
+     * Adds the values of another stream, which is left unchanged, with the pairwise update of Chan,
+     * Golub and LeVeque. Merging the same streams in the same order always gives the same result.
+     * @param other the statistics to merge into these.
+     */
+
+    public void merge(RunningStats other) {
+        if (other.count == 0) {
+            return;
+        }
+        long count = this.count + other.count;
+        double delta = other.mean - this.mean;
+        this.mean += delta*other.count/count;
+        this.squares += other.squares + delta*delta*((double) this.count*other.count/count);
+        this.count = count;
+    }
+
+    /** @return the number of values added so far.
+    */
+
+    public long count() {
+        return this.count;
+    }
+
+    /** @return the mean of the values added so far, or NaN if there are none.
+    */
+
+    public double mean() {
+        return this.count == 0 ? Double.NaN : this.mean;
+    }
+
+    /** @return the sample variance of the values added so far, or NaN if there are fewer than two.
+    */
+
+    public double var() {
+        return this.count < 2 ? Double.NaN : this.squares/(this.count - 1);
+    }
+
+    /** @return the sample standard deviation of the values added so far.
+    */
+
+    public double stddev() {
+        return Math.sqrt(this.var());
+    }
+}
@@ -0,0 +1,178 @@
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+/**
+ *  The <tt>StripPercolation</tt> class decides percolation for a strip that is N sites wide
+ *  and arbitrarily tall, with the rows given one at a time from the top down. Only the
+ *  labels of the most recent row are kept, so memory is proportional to <em>N</em> no
+ *  matter how many rows are added.
+ *  <p>
+ *  Every open site of the last row carries a label in {0, ..., k-1}, and every label a flag
+ *  telling whether its cluster reaches the top row. Clusters that have left the last row can
+ *  never grow again, so forgetting them loses nothing. Adding a row labels its horizontal
+ *  runs of open sites, joins each run with the labels of the open sites above it in a
+ *  union-find of at most 2N elements, merges the flags, and finally relabels the roots that
+ *  appear in the new row as {0, ..., k'-1}. A row takes time proportional to <em>N</em>
+ *  times the amortized cost of a union-find operation, and allocates nothing.
+ *  <p>
+ *  The strip of rows added so far percolates when a site of the last row is connected to
+ *  the top row. Once no site of the last row is, the top clusters are gone for good;
+ *  <em>reach</em> then stays at the deepest row they got to.
+ */
+
+public class StripPercolation {
+
+    private int N;
+    private long rows;
+    private long reach;
+    private int labels;
+    private int[] label;
+    private boolean[] top;
+    private int[] next;
+    private int[] parent;
+    private boolean[] rootTop;
+    private int[] compact;
+
+    /**
+     * Initializes an empty strip N sites wide.
+     * @throws java.lang.IllegalArgumentException if N < 1
+     * @param N the width of the strip.
+     */
+
+    public StripPercolation(int N) {
+        if (N < 1) {
+            throw new IllegalArgumentException("Must have N > 0");
+        }
+        this.N = N;
+        this.label = new int[N];
+        this.top = new boolean[N];
+        this.next = new int[N];
+        this.parent = new int[2*N];
+        this.rootTop = new boolean[2*N];
+        this.compact = new int[2*N];
+        for (int j = 0; j < N; j++) {
+            this.label[j] = -1;
+        }
+    }
+
+    /**
+     * Adds a row below the last one.
+     * @param open the open sites of the row, with bit j - 1 set if column j is open.
+     */
+
+    public void addRow(BitSet open) {
+        int k = this.labels;
+        int count = k;
+        for (int j = 0; j < N; j++) {
+            if (!open.get(j)) {
+                next[j] = -1;
+            } else if (j > 0 && next[j-1] >= 0) {
+                next[j] = next[j-1];
+            } else {
+                parent[count] = count;
+                rootTop[count] = this.rows == 0;
+                next[j] = count++;
+            }
+        }
+        for (int l = 0; l < k; l++) {
+            parent[l] = l;
+            rootTop[l] = top[l];
+        }
+        for (int j = 0; j < N; j++) {
+            if (next[j] >= 0 && label[j] >= 0) {
+                union(next[j], label[j]);
+            }
+        }
+        for (int l = 0; l < count; l++) {
+            compact[l] = -1;
+        }
+        int fresh = 0;
+        boolean alive = false;
+        for (int j = 0; j < N; j++) {
+            if (next[j] < 0) {
+                label[j] = -1;
+                continue;
+            }
+            int root = find(next[j]);
+            if (compact[root] < 0) {
+                compact[root] = fresh;
+                top[fresh] = rootTop[root];
+                alive |= rootTop[root];
+                fresh++;
+            }
+            label[j] = compact[root];
+        }
+        this.labels = fresh;
+        this.rows++;
+        if (alive) {
+            this.reach = this.rows;
+        }
+    }
+
+    private int find(int p) {
+        while (p != parent[p]) {
+            parent[p] = parent[parent[p]];
+            p = parent[p];
+        }
+        return p;
+    }
+
+    private void union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP != rootQ) {
+            parent[rootQ] = rootP;
+            rootTop[rootP] |= rootTop[rootQ];
+        }
+    }
+
+    /**
+     * @return the number of rows added so far.
+     */
+
+    public long rows() {
+        return this.rows;
+    }
+
+    /**
+     * Checks to see if the strip of rows added so far percolates.
+     * @return true if some site of the last row is connected to the top row, false otherwise.
+     */
+
+    public boolean percolates() {
+        return this.rows > 0 && this.reach == this.rows;
+    }
+
+    /**
+     * Gives the deepest row reached from the top, i.e. the last row r such that rows 1 through r percolate.
+     * @return the spanning row, or 0 if no site of the top row is open.
+     */
+
+    public long reach() {
+        return this.reach;
+    }
+
+    /**
+    * takes an integer N, a probability p and a number of rows L, adds up to L random rows to a strip
+    * N sites wide, each site open with probability p, and prints how far the top clusters reach.
+    */
+
+    public static void main(String[] args) {
+        int N = Integer.parseInt(args[0]);
+        double p = Double.parseDouble(args[1]);
+        long L = Long.parseLong(args[2]);
+        StripPercolation strip = new StripPercolation(N);
+        SplittableRandom random = new SplittableRandom();
+        BitSet row = new BitSet(N);
+        while (strip.rows() < L && (strip.rows() == 0 || strip.percolates())) {
+            row.clear();
+            for (int j = 0; j < N; j++) {
+                if (random.nextDouble() < p) {
+                    row.set(j);
+                }
+            }
+            strip.addRow(row);
+        }
+        System.out.println("rows = " + strip.rows() + ", reach = " + strip.reach());
+    }
+}
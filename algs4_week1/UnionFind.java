@@ -0,0 +1,82 @@
+/**
+ *  The <tt>UnionFind</tt> interface is the union-find engine used by the
+ *  Percolation data type. Elements are the integers 0 through <em>size() - 1</em>.
+ *  It supports the <em>union</em>, <em>find</em> and <em>connected</em> operations,
+ *  so that a different engine can be plugged into a Percolation system.
+ *  <p>
+ *  For additional documentation, see <a href="http://algs4.cs.princeton.edu/15uf">Section 1.5</a> of
+ *  <i>Algorithms, 4th Edition</i> by Robert Sedgewick and Kevin Wayne.
+ */
+
+public interface UnionFind {
+
+    /**
+     * @return the number of elements in the data structure.
+     */
+
+    int size();
+
+    /**
+     * Returns the component identifier for the component containing the given element.
+     * @param p the element.
+     * @return the root of the component containing p.
+     */
+
+    int find(int p);
+
+    /**
+     * Returns the number of elements in the component containing the given element.
+     * @param p the element.
+     * @return the size of the component containing p.
+     */
+
+    int componentSize(int p);
+
+    /**
+     * Returns the number of elements in the component of a root, without a find.
+     * @param root a root, as returned by find.
+     * @return the size of the component of root.
+     */
+
+    int rootSize(int root);
+
+    /**
+     * Merges the component containing p with the component containing q.
+     * @param p, q the two elements.
+     * @return the root of the merged component.
+     */
+
+    int union(int p, int q);
+
+    /**
+     * Merges the components of two distinct roots, without a find. Callers that have just found both
+     * roots, e.g. to read their sizes or flags, use this instead of union.
+     * @param rootP, rootQ two distinct roots, as returned by find.
+     * @return the root of the merged component, which is rootP or rootQ.
+     */
+
+    int link(int rootP, int rootQ);
+
+    /**
+     * Checks to see if the two elements are in the same component.
+     * @param p, q the two elements.
+     * @return true if p and q are in the same component, false otherwise.
+     */
+
+    boolean connected(int p, int q);
+
+    /**
+     * Isolates every element again, so that the data structure can be reused without reallocating.
+     */
+
+    void reset();
+
+    /**
+     * Gives the metrics the engine records into, if it records any.
+     * @return the engine's metrics, or null if it keeps none or metrics are disabled.
+     */
+
+    default UnionFindMetrics metrics() {
+        return null;
+    }
+}
@@ -0,0 +1,237 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ *  The <tt>UnionFindMetrics</tt> class counts what a union-find engine and the Percolation
+ *  system on top of it do: the number of <em>open</em> and <em>connected</em> calls, the number
+ *  of unions that joined two components, a histogram of the path lengths walked by <em>find</em>,
+ *  and the longest such path, i.e. the greatest tree height any find has seen. Every find is
+ *  counted, including the ones done inside <em>union</em> and <em>connected</em>.
+ *  <p>
+ *  Metrics are off unless the JVM runs with <tt>-Dpercolation.metrics=true</tt>. The switch is
+ *  the constant ENABLED, and every recording call sits behind a test of it, so when it is false
+ *  the JIT folds the tests away and the engines compile to exactly the code they had without
+ *  metrics. When it is true, each engine records into its own instance with plain, unshared
+ *  fields, so the hot path gains a few increments but no atomic operations or contention.
+ *  <p>
+ *  An engine adds its counts to the process-wide totals and clears them whenever it is reset,
+ *  e.g. between PercolationStats trials, or when <em>publish</em> is called. The totals are
+ *  available from <em>total</em> and over JMX through UnionFindMetricsMXBean; <em>snapshot</em>
+ *  gives the counts of one engine since it was last reset.
+ */
+
+public class UnionFindMetrics {
+
+    /**
+     * True if the JVM runs with -Dpercolation.metrics=true.
+     */
+
+    public static final boolean ENABLED = Boolean.getBoolean("percolation.metrics");
+
+    private static final int LENGTHS = 33;
+    private static final UnionFindMetrics TOTAL = new UnionFindMetrics();
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(),
+                    new ObjectName("algs4:type=UnionFindMetrics"));
+            } catch (InstanceAlreadyExistsException e) {
+                // another class loader got there first; its totals are the ones shown.
+            } catch (JMException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private long opens;
+    private long unions;
+    private long finds;
+    private long connected;
+    private long[] lengths = new long[LENGTHS];
+    private int maxLength;
+
+    /**
+     * @return a fresh instance for an engine, or null if metrics are disabled.
+     */
+
+    static UnionFindMetrics create() {
+        return ENABLED ? new UnionFindMetrics() : null;
+    }
+
+    void open() {
+        this.opens++;
+    }
+
+    void union() {
+        this.unions++;
+    }
+
+    void connected() {
+        this.connected++;
+    }
+
+    /**
+     * Records a find that walked the given number of parent links.
+     * @param length the depth of the element the find started from.
+     */
+
+    void find(int length) {
+        this.finds++;
+        this.lengths[Math.min(length, LENGTHS - 1)]++;
+        if (length > this.maxLength) {
+            this.maxLength = length;
+        }
+    }
+
+    /**
+     * Adds the counts of this instance to the process-wide totals and clears them.
+     */
+
+    public void publish() {
+        synchronized (TOTAL) {
+            TOTAL.add(this);
+        }
+        this.opens = 0;
+        this.unions = 0;
+        this.finds = 0;
+        this.connected = 0;
+        Arrays.fill(this.lengths, 0L);
+        this.maxLength = 0;
+    }
+
+    private void add(UnionFindMetrics other) {
+        this.opens += other.opens;
+        this.unions += other.unions;
+        this.finds += other.finds;
+        this.connected += other.connected;
+        for (int k = 0; k < LENGTHS; k++) {
+            this.lengths[k] += other.lengths[k];
+        }
+        this.maxLength = Math.max(this.maxLength, other.maxLength);
+    }
+
+    /**
+     * @return the counts of this instance since it was last published.
+     */
+
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * @return the process-wide totals of every published instance.
+     */
+
+    public static Snapshot total() {
+        synchronized (TOTAL) {
+            return new Snapshot(TOTAL);
+        }
+    }
+
+    /**
+     * The counts at one moment, which no longer change.
+     */
+
+    public static final class Snapshot {
+
+        private final long opens;
+        private final long unions;
+        private final long finds;
+        private final long connected;
+        private final long[] lengths;
+        private final int maxLength;
+
+        private Snapshot(UnionFindMetrics m) {
+            this.opens = m.opens;
+            this.unions = m.unions;
+            this.finds = m.finds;
+            this.connected = m.connected;
+            this.lengths = m.lengths.clone();
+            this.maxLength = m.maxLength;
+        }
+
+        public long opens() {
+            return this.opens;
+        }
+
+        public long unions() {
+            return this.unions;
+        }
+
+        public long finds() {
+            return this.finds;
+        }
+
+        public long connected() {
+            return this.connected;
+        }
+
+        /**
+         * @return the number of finds by path length, the last entry counting all longer paths.
+         */
+
+        public long[] findPathLengths() {
+            return this.lengths.clone();
+        }
+
+        public int maxFindPathLength() {
+            return this.maxLength;
+        }
+
+        /**
+         * @return the mean path length of a find, counting the paths of the last bucket at its length.
+         */
+
+        public double meanFindPathLength() {
+            long sum = 0;
+            for (int k = 0; k < LENGTHS; k++) {
+                sum += k*this.lengths[k];
+            }
+            return this.finds == 0 ? Double.NaN : (double) sum/this.finds;
+        }
+
+        public String toString() {
+            return "opens = " + opens + ", unions = " + unions + ", finds = " + finds + ", connected = " + connected
+                + ", mean find path = " + meanFindPathLength() + ", max find path = " + maxLength;
+        }
+    }
+
+    /**
+     * Shows the process-wide totals over JMX.
+     */
+
+    private static class Bean implements UnionFindMetricsMXBean {
+
+        public long getOpens() {
+            return total().opens();
+        }
+
+        public long getUnions() {
+            return total().unions();
+        }
+
+        public long getFinds() {
+            return total().finds();
+        }
+
+        public long getConnected() {
+            return total().connected();
+        }
+
+        public long[] getFindPathLengths() {
+            return total().findPathLengths();
+        }
+
+        public int getMaxFindPathLength() {
+            return total().maxFindPathLength();
+        }
+
+        public double getMeanFindPathLength() {
+            return total().meanFindPathLength();
+        }
+    }
+}
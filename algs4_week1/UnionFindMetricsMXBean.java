@@ -0,0 +1,26 @@
+/**
+ *  The <tt>UnionFindMetricsMXBean</tt> interface is the JMX view of the totals kept by
+ *  UnionFindMetrics. It is registered as <tt>algs4:type=UnionFindMetrics</tt> when the
+ *  metrics are enabled with <tt>-Dpercolation.metrics=true</tt>.
+ */
+
+public interface UnionFindMetricsMXBean {
+
+    long getOpens();
+
+    long getUnions();
+
+    long getFinds();
+
+    long getConnected();
+
+    /**
+     * @return the number of finds by path length, the last entry counting all longer paths.
+     */
+
+    long[] getFindPathLengths();
+
+    int getMaxFindPathLength();
+
+    double getMeanFindPathLength();
+}
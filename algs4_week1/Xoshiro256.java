@@ -0,0 +1,130 @@
+/**
+ *  The <tt>Xoshiro256</tt> class is a RandomSource implementing the xoshiro256** generator
+ *  of Blackman and Vigna: 256 bits of state, a period of 2^256 - 1, and a handful of shifts,
+ *  rotations and xors per draw. It is not synchronized.
+ *  <p>
+ *  <em>jump</em> advances the state by 2^128 draws in constant time, so one seeded generator
+ *  can be cut into 2^128 non-overlapping streams of 2^128 draws each; <em>split</em> hands out
+ *  the current stream and jumps this generator to the next one. <em>fillUniform</em> keeps the
+ *  state in local variables for the whole array.
+ *  <p>
+ *  See D. Blackman and S. Vigna, <i>Scrambled linear pseudorandom number generators</i>,
+ *  ACM Trans. Math. Softw. 47(4), 2021, and <a href="https://prng.di.unimi.it">prng.di.unimi.it</a>.
+ */
+
+public class Xoshiro256 implements RandomSource {
+
+    private long s0;
+    private long s1;
+    private long s2;
+    private long s3;
+
+    private static final long[] JUMP = {
+        0x180ec6d33cfd0abaL, 0xd5a61266f0c9392cL, 0xa9582618e03fc9aaL, 0x39abdc4529b1661cL
+    };
+
+    /**
+     * Creates a generator whose state is expanded from the seed with SplitMix64, as recommended by
+     * the authors, so that even similar seeds give unrelated states.
+     * @param seed the seed.
+     */
+
+    public Xoshiro256(long seed) {
+        this.s0 = splitMix(seed += 0x9e3779b97f4a7c15L);
+        this.s1 = splitMix(seed += 0x9e3779b97f4a7c15L);
+        this.s2 = splitMix(seed += 0x9e3779b97f4a7c15L);
+        this.s3 = splitMix(seed + 0x9e3779b97f4a7c15L);
+    }
+
+    private Xoshiro256(long s0, long s1, long s2, long s3) {
+        this.s0 = s0;
+        this.s1 = s1;
+        this.s2 = s2;
+        this.s3 = s3;
+    }
+
+    private static long splitMix(long z) {
+        z = (z ^ (z >>> 30))*0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27))*0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    public long nextLong() {
+        long result = Long.rotateLeft(s1*5, 7)*9;
+        long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        return result;
+    }
+
+    /**
+     * Advances the generator by 2^128 draws.
+     */
+
+    public void jump() {
+        long t0 = 0;
+        long t1 = 0;
+        long t2 = 0;
+        long t3 = 0;
+        for (long word : JUMP) {
+            for (int b = 0; b < 64; b++) {
+                if ((word & (1L << b)) != 0) {
+                    t0 ^= s0;
+                    t1 ^= s1;
+                    t2 ^= s2;
+                    t3 ^= s3;
+                }
+                nextLong();
+            }
+        }
+        s0 = t0;
+        s1 = t1;
+        s2 = t2;
+        s3 = t3;
+    }
+
+    /**
+     * Returns a generator continuing the current stream, and jumps this generator 2^128 draws ahead.
+     * @return the new generator.
+     */
+
+    public RandomSource split() {
+        Xoshiro256 copy = new Xoshiro256(s0, s1, s2, s3);
+        this.jump();
+        return copy;
+    }
+
+    public void fillUniform(int[] out, int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("n must be positive.");
+        }
+        long s0 = this.s0;
+        long s1 = this.s1;
+        long s2 = this.s2;
+        long s3 = this.s3;
+        int threshold = Integer.remainderUnsigned(-bound, bound);
+        for (int i = 0; i < out.length; i++) {
+            long m;
+            do {
+                long result = Long.rotateLeft(s1*5, 7)*9;
+                long t = s1 << 17;
+                s2 ^= s0;
+                s3 ^= s1;
+                s1 ^= s2;
+                s0 ^= s3;
+                s2 ^= t;
+                s3 = Long.rotateLeft(s3, 45);
+                m = (result >>> 32)*bound;
+            } while (Integer.compareUnsigned((int) m, threshold) < 0);
+            out[i] = (int) (m >>> 32);
+        }
+        this.s0 = s0;
+        this.s1 = s1;
+        this.s2 = s2;
+        this.s3 = s3;
+    }
+}
@@ -0,0 +1,328 @@
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+//* Implements a RandomizedQueue that many threads can use at once. The items are split over shards, a power of
+//  two of them, each a swap-remove array like the one of RandomizedQueue behind its own lock. Every thread is
+//  given a shard of its own, round robin, the first time it uses the queue, and enqueue adds to that shard, so
+//  producers on different threads only meet once there are more threads than shards.
+//
+//  dequeue and sample pick a shard by rejection sampling: a shard s is drawn uniformly and accepted with
+//  probability n_s/M, where n_s is its size and M a ceiling shared by all threads, and an item is then drawn
+//  uniformly from the accepted shard. An item of shard s is thus returned with probability (1/K)(n_s/M)(1/n_s)
+//  per attempt, the same for every item, as long as M is at least the size of every shard. A shard that grows past
+//  M raises it before publishing its new size, so a thread that reads a size and then M sees an M at least that
+//  large; M is kept a power of two so that growing shards write it only when they cross one. So when no other
+//  thread changes the queue during the call, every item is returned with probability exactly 1/n.
+//
+//  A thread that finds K attempts in a row rejected scans the shards and lowers M to the power of two at or above
+//  the largest size, so that M stays below twice the largest shard after the queue shrinks. Only a scan racing an
+//  enqueue can leave a shard larger than M; until some thread draws that shard and raises M again, each attempt
+//  accepts the items of the other shards at up to M'/M times their fair rate, where M' is the size that shard
+//  reached. Other concurrent changes only change n between the draw and the lock. An attempt takes a lock only
+//  when it is accepted, and takes K*M/n attempts on average, less than 2K*max/n for the largest shard size max:
+//  1 to 2 when producers are balanced, up to 2K when a single thread produces everything.
+//
+//  dequeue throws NoSuchElementException only if the queue was empty at some moment during the call: a scan that
+//  finds every shard empty is repeated, and believed only if no shard was added to in between. The iterator walks
+//  a shuffled copy of the items the shards held as they were locked one after the other.
+
+
+public class ConcurrentRandomizedQueue<Item> implements Iterable<Item> {
+
+    private final Shard[] shards;
+    private final int mask;
+    private final AtomicInteger threads = new AtomicInteger();
+    private final AtomicInteger ceiling = new AtomicInteger();
+    private final RandomSource seeds;
+    private final ThreadLocal<Local> local;
+
+    // one shard per available processor, rounded up to a power of two.
+    public ConcurrentRandomizedQueue() {
+        this(Runtime.getRuntime().availableProcessors(), new SplittableSource());
+    }
+
+    //@param shards the number of shards, rounded up to a power of two.
+    //@param random the source from which every thread splits its own random stream.
+    public ConcurrentRandomizedQueue(int shards, RandomSource random) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("Must have at least one shard.");
+        }
+        int k = Integer.highestOneBit(shards);
+        k = k < shards ? 2*k : k;
+        this.shards = new ConcurrentRandomizedQueue.Shard[k];
+        for (int i = 0; i < k; i++) {
+            this.shards[i] = new Shard();
+        }
+        this.mask = k - 1;
+        this.seeds = random;
+        this.local = ThreadLocal.withInitial(() -> {
+            synchronized (this.seeds) {
+                return new Local(this.seeds.split(), this.threads.getAndIncrement() & this.mask);
+            }
+        });
+    }
+
+    // what a thread keeps to itself: its random stream and the shard it enqueues to.
+    private static class Local {
+
+        private final RandomSource random;
+        private final int shard;
+
+        private Local(RandomSource random, int shard) {
+            this.random = random;
+            this.shard = shard;
+        }
+    }
+
+    // a swap-remove array behind a lock; size is volatile so that the sampling can read it without the lock,
+    // and adds counts the enqueues, so that a scan can tell whether the shard was added to since the last one.
+    private class Shard {
+
+        private Item[] items = (Item[]) new Object[2];
+        private volatile int size;
+        private volatile int adds;
+
+        private synchronized void add(Item item) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, 2*size);
+            }
+            items[size] = item;
+            adds++;
+            if (size + 1 > ceiling.get()) {
+                raise(size + 1);
+            }
+            size++;
+        }
+
+        // removes or returns a uniformly drawn item, or returns null if the shard is empty by now.
+        private synchronized Item take(RandomSource random, boolean remove) {
+            int n = size;
+            if (n == 0) {
+                return null;
+            }
+            int r = random.uniform(n);
+            Item item = items[r];
+            if (remove) {
+                items[r] = items[n - 1];
+                items[n - 1] = null;
+                size = n - 1;
+                if (items.length > 2 && n - 1 <= items.length/4) {
+                    items = Arrays.copyOf(items, items.length/2);
+                }
+            }
+            return item;
+        }
+    }
+
+    //@return true if every shard was empty when it was checked
+    public boolean isEmpty() {
+        for (Shard shard : shards) {
+            if (shard.size > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //@return the number of items, which is exact only if no other thread is changing the queue
+    public int size() {
+        int n = 0;
+        for (Shard shard : shards) {
+            n += shard.size;
+        }
+        return n;
+    }
+
+    //add new item to the shard of the calling thread
+    //@param item the item to be added.
+    public void enqueue(Item item) {
+        if (item == null) {
+            throw new NullPointerException("Can't add null item to the queue.");
+        }
+        shards[local.get().shard].add(item);
+    }
+
+    // randomly dequeue an item.
+    public Item dequeue() {
+        return pick(true);
+    }
+
+    //return a random item, but don't pop it.
+    public Item sample() {
+        return pick(false);
+    }
+
+    // draws shards by rejection sampling until one yields an item; after shards.length rejections in a row,
+    // rescans the shards to lower the ceiling, or to find that they are all empty. The size is read before the
+    // ceiling, so a shard found above it was grown past a ceiling that a scan lowered meanwhile.
+    //@throws NoSuchElementException if two scans found every shard empty and no enqueue in between.
+    private Item pick(boolean remove) {
+        RandomSource random = this.local.get().random;
+        while (true) {
+            for (int attempt = 0; attempt < shards.length; attempt++) {
+                Shard shard = shards[random.uniform(shards.length)];
+                int n = shard.size;
+                int m = ceiling.get();
+                if (n > m) {
+                    raise(n);
+                } else if (n > 0 && random.uniform(m) < n) {
+                    Item item = shard.take(random, remove);
+                    if (item != null) {
+                        return item;
+                    }
+                }
+            }
+            int max = 0;
+            for (Shard shard : shards) {
+                max = Math.max(max, shard.size);
+            }
+            if (max == 0 && isQuiescentlyEmpty()) {
+                throw new NoSuchElementException("The Que is empty");
+            }
+            int m = ceiling.get();
+            if (powerOfTwo(max) < m) {
+                ceiling.compareAndSet(m, powerOfTwo(max));
+            }
+        }
+    }
+
+    // raises the ceiling to the power of two at or above n, unless another thread already raised it that far.
+    private void raise(int n) {
+        int m = ceiling.get();
+        while (m < n && !ceiling.compareAndSet(m, powerOfTwo(n))) {
+            m = ceiling.get();
+        }
+    }
+
+    //@return the smallest power of two at least n, or 0 if n is 0.
+    private static int powerOfTwo(int n) {
+        return n <= 1 ? n : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    // reads the add counts, checks that every shard is empty, and reads the counts again. If none changed,
+    // no shard was added to while it was being checked, so they were all empty at the end of the check.
+    private boolean isQuiescentlyEmpty() {
+        int[] adds = new int[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            adds[i] = shards[i].adds;
+            if (shards[i].size > 0) {
+                return false;
+            }
+        }
+        for (int i = 0; i < shards.length; i++) {
+            if (shards[i].adds != adds[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // implements the iterable iterface, over a shuffled copy of the items.
+    public Iterator<Item> iterator() {
+        List<Item> copy = new ArrayList<Item>();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (int i = 0; i < shard.size; i++) {
+                    copy.add(shard.items[i]);
+                }
+            }
+        }
+        RandomSource random = this.local.get().random;
+        for (int i = 1; i < copy.size(); i++) {
+            Collections.swap(copy, i, random.uniform(i + 1));
+        }
+        return Collections.unmodifiableList(copy).iterator();
+    }
+
+    // every thread enqueues and then dequeues ops items, timed for 1, 2, 4, ... threads; then the sampling bias
+    // is measured on a skewed queue of 8 shards: the main thread samples while every shard holds at most one
+    // item, then producers leave 1000 items on one shard and one on each of six others, and the main thread
+    // samples again. The share of the 7 small-shard items among these second samples should be 7/1007.
+    //@param args optionally the largest number of threads and the number of operations per thread.
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int ops = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            ConcurrentRandomizedQueue<Integer> queue = new ConcurrentRandomizedQueue<Integer>(threads, new SplittableSource(1));
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicLong sink = new AtomicLong();
+            Thread[] workers = new Thread[threads];
+            for (int k = 0; k < threads; k++) {
+                workers[k] = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    long sum = 0;
+                    for (int i = 0; i < ops; i++) {
+                        queue.enqueue(i);
+                        if ((i & 1) == 1) {
+                            sum += queue.dequeue();
+                            sum += queue.dequeue();
+                        }
+                    }
+                    sink.addAndGet(sum);
+                });
+                workers[k].start();
+            }
+            long t0 = System.nanoTime();
+            start.countDown();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            double seconds = (System.nanoTime() - t0)/1e9;
+            System.out.printf("threads = %2d: %.1f million operations per second%n", threads, 2.0*threads*ops/seconds/1e6);
+        }
+        int shards = 8;
+        int large = 1000;
+        int runs = 20000;
+        int n = large + shards - 1;
+        ExecutorService[] producers = new ExecutorService[shards];
+        for (int k = 1; k < shards; k++) {
+            producers[k] = Executors.newSingleThreadExecutor();
+        }
+        ConcurrentRandomizedQueue<Integer> skewed = null;
+        int small = 0;
+        for (int run = 0; run < runs; run++) {
+            ConcurrentRandomizedQueue<Integer> queue = new ConcurrentRandomizedQueue<Integer>(shards, new SplittableSource(run));
+            queue.enqueue(large);
+            queue.sample();
+            producers[1].submit(() -> {
+                for (int i = 0; i < large; i++) {
+                    queue.enqueue(i);
+                }
+            }).get();
+            for (int k = 2; k < shards; k++) {
+                final int item = large + k - 1;
+                producers[k].submit(() -> queue.enqueue(item)).get();
+            }
+            if (queue.sample() >= large) {
+                small++;
+            }
+            skewed = queue;
+        }
+        for (int k = 1; k < shards; k++) {
+            producers[k].shutdown();
+        }
+        System.out.printf("sampling after growth: small-shard items %.2f%% of %d samples, expected %.2f%%%n",
+                          100.0*small/runs, runs, 100.0*(shards - 1)/n);
+        int draws = 2000000;
+        long[] counts = new long[n];
+        for (int d = 0; d < draws; d++) {
+            counts[skewed.sample()]++;
+        }
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (long c : counts) {
+            min = Math.min(min, c);
+            max = Math.max(max, c);
+        }
+        System.out.printf("sampling: %d items, expected %.0f draws each, min %d, max %d%n", n, (double) draws/n, min, max);
+    }
+}
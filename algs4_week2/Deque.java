@@ -1,63 +1,55 @@
 import java.util.*;
-//* Implements a data strucutre called Deque which is a queue which allows pushing and popping at both ends are possible. The underlying data structure is a doubly linked list.
+//* Implements a data strucutre called Deque which is a queue which allows pushing and popping at both ends are possible. The underlying data structure is a circular array.
+//  The items live in an array whose length is a power of two, from index head on, wrapping around at the end, so
+//  position i of the Deque is slot (head + i) & (length - 1). Both ends are pushed and popped in constant time without
+//  allocating; the array doubles when full and halves when a quarter full, which keeps every operation amortized O(1).
 
 
 public class Deque<Item> implements Iterable<Item> {
-    
-    private Node frontSentinal;
-    private Node backSentinal;
+
+    private static final int MIN_CAPACITY = 8;
+
+    private Item[] items;
+    private int head;
     private int size;
-        
+
     public Deque() {
-        this.frontSentinal = new Node(null,this.backSentinal,null);
-        this.backSentinal = new Node(null,null,this.frontSentinal);
+        this.items = (Item[]) new Object[MIN_CAPACITY];
+        this.head = 0;
         this.size = 0;
     }
- 
-    private Node firstNode() {return frontSentinal.inFrontOf;}
-  
-    private Node lastNode() {return backSentinal.behind;}
-
-    private class Node {
-       
-        public Item thing;
-        public Node inFrontOf;
-        public Node behind;
-        
-        public Node(Item thing, Node inFrontOf, Node behind) {
-            this.thing = thing;
-            this.inFrontOf = inFrontOf;
-            this.behind = behind;
-        }    
-    }
 
-    //@return true if the Deque is empty 
+    //@return true if the Deque is empty
     public boolean isEmpty() {
         return (size == 0);
     }
-   
+
     //@return the size of the Deque;
     public int size() {
         return this.size;
     }
 
+    //@param index the position of the item, 0 being the front.
+    //@return the item at the given position, without removing it.
+    public Item get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("No item at index " + index + " in a Deque of size " + size + ".");
+        }
+        return items[(head + index) & (items.length - 1)];
+    }
+
     //add item to front of que
     //param @item the item to be added
     public void addFirst(Item item) {
         if (item == null) {
             throw new NullPointerException("Can't add null item to Deque.");
-        } else {
-            if (this.size == 0) {
-                Node x = new Node(item, frontSentinal, backSentinal);
-                frontSentinal.inFrontOf = x;
-                backSentinal.behind = x;
-            } else {
-                Node x = new Node(item, frontSentinal.inFrontOf, frontSentinal);
-                frontSentinal.inFrontOf.behind = x;
-                frontSentinal.inFrontOf = x;
-            }
-            size++;
         }
+        if (size == items.length) {
+            resize(2*items.length);
+        }
+        head = (head - 1) & (items.length - 1);
+        items[head] = item;
+        size++;
     }
 
     //add item to the back of the queue
@@ -65,70 +57,80 @@ public class Deque<Item> implements Iterable<Item> {
     public void addLast(Item item) {
         if (item == null) {
             throw new NullPointerException("Can't add null item to Deque.");
-        } else {
-            if (this.size == 0) {
-                Node x = new Node(item, frontSentinal, backSentinal);
-                frontSentinal.inFrontOf = x;
-                backSentinal.behind = x;
-            } else {
-                Node x = new Node(item, backSentinal, backSentinal.behind);
-                backSentinal.behind.inFrontOf = x;
-                backSentinal.behind = x;
-            }
-            size++;
         }
+        if (size == items.length) {
+            resize(2*items.length);
+        }
+        items[(head + size) & (items.length - 1)] = item;
+        size++;
     }
 
     // pop the item in the font of the queue
     public Item removeFirst() {
         if (this.size == 0) {
             throw new NoSuchElementException("The Deque is empty.");
-        } else {
-            Node x = this.firstNode();
-            frontSentinal.inFrontOf = x.inFrontOf;
-            x.inFrontOf.behind = frontSentinal;
-            this.size--;
-            return x.thing;
         }
+        Item item = items[head];
+        items[head] = null;
+        head = (head + 1) & (items.length - 1);
+        size--;
+        shrinkIfSparse();
+        return item;
     }
 
     // pop the item in the back of the queue
     public Item removeLast() {
         if (this.size == 0) {
             throw new NoSuchElementException("The Deque is empty.");
-        } else {
-            Node x = this.lastNode();
-            backSentinal.behind = x.behind;
-            x.behind.inFrontOf = backSentinal;
-            this.size--;
-            return x.thing;
         }
+        int last = (head + size - 1) & (items.length - 1);
+        Item item = items[last];
+        items[last] = null;
+        size--;
+        shrinkIfSparse();
+        return item;
     }
 
-    // implements the iterable interface for Deque
+    // halves the array when it is at most a quarter full, so that a
+    // run of pops right after a doubling cannot make it resize again.
+    private void shrinkIfSparse() {
+        if (items.length > MIN_CAPACITY && size <= items.length/4) {
+            resize(items.length/2);
+        }
+    }
+
+    // copies the items, front first, to the start of a new array.
+    //@param capacity the length of the new array, a power of two.
+    private void resize(int capacity) {
+        Item[] x = (Item[]) new Object[capacity];
+        int firstPart = Math.min(size, items.length - head);
+        System.arraycopy(items, head, x, 0, firstPart);
+        System.arraycopy(items, 0, x, firstPart, size - firstPart);
+        items = x;
+        head = 0;
+    }
+
+    // implements the iterable interface for Deque, from front to back
     public Iterator<Item> iterator() { return new ListIterator(); }
 
     private class ListIterator implements Iterator<Item> {
- 
-        public Node current = firstNode();
-           
-        public boolean hasNext() {return current.thing != null;}
+
+        public int i = 0;
+
+        public boolean hasNext() {return i < size;}
 
         public  void remove() {
             throw new UnsupportedOperationException("'return' method not implemented.");
-    }
+        }
 
         public Item next() {
-            Item item = current.thing;
-            if (item == null) {
+            if (i >= size) {
                 throw new NoSuchElementException("No next element in Deque.");
-            }  
-            current = current.inFrontOf;
-            return item;
+            }
+            return items[(head + i++) & (items.length - 1)];
         }
     }
-    
+
     public static void main(String[] args) {
-    }   
+    }
 }
-	
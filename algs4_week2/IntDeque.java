@@ -0,0 +1,126 @@
+import java.util.*;
+//* Implements a Deque of int values, with the same contract as Deque<Integer> but backed by a int[] circular array,
+//  so a value takes 4 bytes instead of a boxed Integer and its array slot. The layout is that of Deque: a
+//  power-of-two array indexed with a mask, doubling when full and halving when a quarter full. The iterator is a
+//  PrimitiveIterator.OfInt, whose nextInt returns the values without boxing them.
+
+
+public class IntDeque implements Iterable<Integer> {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private int[] items;
+    private int head;
+    private int size;
+
+    public IntDeque() {
+        this.items = new int[MIN_CAPACITY];
+        this.head = 0;
+        this.size = 0;
+    }
+
+    //@return true if the Deque is empty
+    public boolean isEmpty() {
+        return (size == 0);
+    }
+
+    //@return the size of the Deque;
+    public int size() {
+        return this.size;
+    }
+
+    //@param index the position of the value, 0 being the front.
+    //@return the value at the given position, without removing it.
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("No item at index " + index + " in a Deque of size " + size + ".");
+        }
+        return items[(head + index) & (items.length - 1)];
+    }
+
+    //add value to front of que
+    //param @value the value to be added
+    public void addFirst(int value) {
+        if (size == items.length) {
+            resize(2*items.length);
+        }
+        head = (head - 1) & (items.length - 1);
+        items[head] = value;
+        size++;
+    }
+
+    //add value to the back of the queue
+    //@param value the value to be added
+    public void addLast(int value) {
+        if (size == items.length) {
+            resize(2*items.length);
+        }
+        items[(head + size) & (items.length - 1)] = value;
+        size++;
+    }
+
+    // pop the value in the font of the queue
+    public int removeFirst() {
+        if (this.size == 0) {
+            throw new NoSuchElementException("The Deque is empty.");
+        }
+        int value = items[head];
+        head = (head + 1) & (items.length - 1);
+        size--;
+        shrinkIfSparse();
+        return value;
+    }
+
+    // pop the value in the back of the queue
+    public int removeLast() {
+        if (this.size == 0) {
+            throw new NoSuchElementException("The Deque is empty.");
+        }
+        int value = items[(head + size - 1) & (items.length - 1)];
+        size--;
+        shrinkIfSparse();
+        return value;
+    }
+
+    // halves the array when it is at most a quarter full.
+    private void shrinkIfSparse() {
+        if (items.length > MIN_CAPACITY && size <= items.length/4) {
+            resize(items.length/2);
+        }
+    }
+
+    // copies the values, front first, to the start of a new array.
+    //@param capacity the length of the new array, a power of two.
+    private void resize(int capacity) {
+        int[] x = new int[capacity];
+        int firstPart = Math.min(size, items.length - head);
+        System.arraycopy(items, head, x, 0, firstPart);
+        System.arraycopy(items, 0, x, firstPart, size - firstPart);
+        items = x;
+        head = 0;
+    }
+
+    // implements the iterable interface for the Deque, from front to back, without boxing
+    public PrimitiveIterator.OfInt iterator() { return new ListIterator(); }
+
+    private class ListIterator implements PrimitiveIterator.OfInt {
+
+        public int i = 0;
+
+        public boolean hasNext() {return i < size;}
+
+        public  void remove() {
+            throw new UnsupportedOperationException("'return' method not implemented.");
+        }
+
+        public int nextInt() {
+            if (i >= size) {
+                throw new NoSuchElementException("No next element in Deque.");
+            }
+            return items[(head + i++) & (items.length - 1)];
+        }
+    }
+
+    public static void main(String[] args) {
+    }
+}
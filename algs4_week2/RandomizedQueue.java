@@ -1,15 +1,22 @@
 import java.util.*;
 
 //* Write a java program which implements the following data structure called RandomizedQueue: popping is random, i.e. does not depend on the push order. Also it should implement Iterable and the iterator should iterate at random.
-//
+//  Randomness comes from a RandomSource, which can be passed in to replay a sequence of dequeues exactly.
 
 public class RandomizedQueue<Item> implements Iterable<Item> {
 
     private Item[] randomizedArray;
     private int size;
     private int arraySize;
+    private RandomSource random;
         
     public RandomizedQueue() {
+        this(new SplittableSource());
+    }
+
+    //@param random the source of randomness for dequeue, sample and the iterator.
+    public RandomizedQueue(RandomSource random) {
+        this.random = random;
         this.randomizedArray = (Item[]) new Object[1];
         this.randomizedArray[0] = null;
         this.size = 0;
@@ -87,7 +94,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
             arraySize = 0;
             return temp;
         } else {
-            int n = StdRandom.uniform(size);
+            int n = random.uniform(size);
             Item temp = randomizedArray[n];
             randomizedArray[n] = randomizedArray[size - 1];
             randomizedArray[size - 1] = null;
@@ -105,7 +112,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         if (this.size == 0) {
             throw new NoSuchElementException("The Deque is empty.");
         }
-        int n = StdRandom.uniform(size);
+        int n = random.uniform(size);
         return randomizedArray[n];
     }
    
@@ -128,7 +135,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
         private Item[] shuffle(Item[] z) {      
 	    int k = size;
 	    for (int i = 0; i < k; i++) {
-                int r = StdRandom.uniform(i+1);
+                int r = random.uniform(i+1);
                 exchange(z, i, r); 
             }  
             return z;
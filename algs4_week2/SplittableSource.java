@@ -0,0 +1,51 @@
+import java.util.SplittableRandom;
+
+/**
+ *  The <tt>SplittableSource</tt> class is a RandomSource backed by java.util.SplittableRandom,
+ *  i.e. the SplitMix64 generator. It is not synchronized, and <em>split</em> hands out
+ *  statistically independent streams. This is the default source of the simulations; seeded
+ *  with the same value it reproduces the streams the simulations drew before RandomSource
+ *  existed.
+ */
+
+public class SplittableSource implements RandomSource {
+
+    private final SplittableRandom random;
+
+    /**
+     * Creates a source with a seed chosen at random.
+     */
+
+    public SplittableSource() {
+        this(new SplittableRandom());
+    }
+
+    /**
+     * Creates a source with the given seed; equal seeds give equal streams.
+     * @param seed the seed.
+     */
+
+    public SplittableSource(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    private SplittableSource(SplittableRandom random) {
+        this.random = random;
+    }
+
+    public long nextLong() {
+        return this.random.nextLong();
+    }
+
+    public RandomSource split() {
+        return new SplittableSource(this.random.split());
+    }
+
+    public int uniform(int n) {
+        return this.random.nextInt(n);
+    }
+
+    public double uniform() {
+        return this.random.nextDouble();
+    }
+}
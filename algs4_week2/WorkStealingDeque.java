@@ -0,0 +1,273 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+//* Implements a Chase-Lev work-stealing deque: one owner thread pushes and pops items at the back, like a stack,
+//  while any number of thief threads take items from the front. The items live in a circular array indexed by
+//  two ever-growing counters, top (the front, only ever incremented, by a compare-and-set) and bottom (the back,
+//  only ever written by the owner); position i is slot i & (length - 1). No operation takes a lock.
+//
+//  The owner's addLast stores the item and then publishes it by writing bottom. Its removeLast first lowers
+//  bottom and then reads top; both are volatile, so a thief that reads top and bottom in the opposite order
+//  cannot also see the item. Only when a single item is left do the owner and the thieves race for it, and the
+//  compare-and-set on top picks the winner. When the array is full the owner copies the items into one twice as
+//  long; thieves that still read the old array find the same items there. The array never shrinks.
+//
+//  A thief cannot clear the slot it took from, since by then the owner may have reused it. The owner clears them
+//  instead, on its next push or pop: every slot of a position below top whose item has not been overwritten yet.
+//  A thief that reads such a slot after it was cleared read top before top moved past it, so its compare-and-set
+//  fails and it drops what it read.
+//
+//  Unlike Deque, only the owner may call addLast and removeLast, a steal can fail because of a concurrent steal
+//  or pop even if items are left, and there is no iterator. size() is exact only when no other thread is active.
+//
+//  See D. Chase and Y. Lev, Dynamic circular work-stealing deque, SPAA 2005, and N. M. Le et al., Correct and
+//  efficient work-stealing for weak memory models, PPoPP 2013.
+
+
+public class WorkStealingDeque<Item> {
+
+    private static final int MIN_CAPACITY = 32;
+    private static final VarHandle TOP;
+
+    static {
+        try {
+            TOP = MethodHandles.lookup().findVarHandle(WorkStealingDeque.class, "top", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private volatile long top;
+    private volatile long bottom;
+    private volatile Object[] items;
+    private long cleared;
+
+    public WorkStealingDeque() {
+        this.items = new Object[MIN_CAPACITY];
+    }
+
+    //@return true if the Deque looked empty when it was checked
+    public boolean isEmpty() {
+        return bottom <= top;
+    }
+
+    //@return the number of items, which is exact only if no other thread is using the Deque
+    public int size() {
+        long n = bottom - top;
+        return n < 0 ? 0 : (int) n;
+    }
+
+    //add item to the back of the queue; owner thread only
+    //@param item the item to be added
+    public void addLast(Item item) {
+        if (item == null) {
+            throw new NullPointerException("Can't add null item to Deque.");
+        }
+        long b = this.bottom;
+        long t = this.top;
+        Object[] a = this.items;
+        if (b - t >= a.length) {
+            a = grow(a, t, b);
+        }
+        clearStolen(a, t, b);
+        a[(int) b & (a.length - 1)] = item;
+        this.bottom = b + 1;
+    }
+
+    // copies the items in [t, b) to the same positions of an array twice as long, and publishes it.
+    private Object[] grow(Object[] a, long t, long b) {
+        Object[] x = new Object[2*a.length];
+        for (long i = t; i < b; i++) {
+            x[(int) i & (x.length - 1)] = a[(int) i & (a.length - 1)];
+        }
+        this.items = x;
+        return x;
+    }
+
+    // nulls the slots of the positions in [cleared, t) that thieves took from. Positions below b - length are
+    // skipped: their slots have been written again since, and may hold items that are still in the Deque.
+    private void clearStolen(Object[] a, long t, long b) {
+        for (long i = Math.max(this.cleared, b - a.length); i < t; i++) {
+            a[(int) i & (a.length - 1)] = null;
+        }
+        this.cleared = t;
+    }
+
+    // pop the item in the back of the queue; owner thread only
+    public Item removeLast() {
+        long b = this.bottom - 1;
+        Object[] a = this.items;
+        this.bottom = b;
+        long t = this.top;
+        clearStolen(a, t, b + 1);
+        if (t > b) {
+            this.bottom = b + 1;
+            throw new NoSuchElementException("The Deque is empty.");
+        }
+        int slot = (int) b & (a.length - 1);
+        Item item = (Item) a[slot];
+        if (t == b) {
+            boolean won = TOP.compareAndSet(this, t, t + 1);
+            this.bottom = b + 1;
+            if (!won) {
+                throw new NoSuchElementException("The Deque is empty.");
+            }
+        }
+        a[slot] = null;
+        return item;
+    }
+
+    // take the item in the front of the queue; any thread.
+    //@return the item, or null if the Deque is empty or another thread took the item first
+    public Item steal() {
+        long t = this.top;
+        long b = this.bottom;
+        if (t >= b) {
+            return null;
+        }
+        Object[] a = this.items;
+        Item item = (Item) a[(int) t & (a.length - 1)];
+        if (!TOP.compareAndSet(this, t, t + 1)) {
+            return null;
+        }
+        return item;
+    }
+
+    // the owner pushes 0, ..., n-1 and pops some of them again while the thieves steal; afterwards every
+    // value must have been taken exactly once.
+    private static void stress(int n, int thieves) throws InterruptedException {
+        WorkStealingDeque<Integer> deque = new WorkStealingDeque<Integer>();
+        AtomicIntegerArray taken = new AtomicIntegerArray(n);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[thieves];
+        AtomicBoolean done = new AtomicBoolean();
+        for (int k = 0; k < thieves; k++) {
+            threads[k] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (true) {
+                    Integer x = deque.steal();
+                    if (x != null) {
+                        taken.incrementAndGet(x);
+                    } else if (done.get() && deque.isEmpty()) {
+                        return;
+                    }
+                }
+            });
+            threads[k].start();
+        }
+        SplittableSource random = new SplittableSource(1);
+        start.countDown();
+        for (int i = 0; i < n; i++) {
+            deque.addLast(i);
+            if (random.uniform(3) == 0) {
+                try {
+                    taken.incrementAndGet(deque.removeLast());
+                } catch (NoSuchElementException e) {
+                    // the thieves got there first.
+                }
+            }
+        }
+        while (true) {
+            try {
+                taken.incrementAndGet(deque.removeLast());
+            } catch (NoSuchElementException e) {
+                break;
+            }
+        }
+        done.set(true);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int i = 0; i < n; i++) {
+            if (taken.get(i) != 1) {
+                throw new IllegalStateException("Value " + i + " was taken " + taken.get(i) + " times.");
+            }
+        }
+        System.out.println("stress: " + n + " values, " + thieves + " thieves, each value taken once");
+    }
+
+    // the owner pushes n items, popping every other push, while the thieves steal from the front; returns
+    // the time in milliseconds until every item has been taken.
+    private static long bench(int n, int thieves, boolean workStealing) throws InterruptedException {
+        WorkStealingDeque<Integer> deque = new WorkStealingDeque<Integer>();
+        ConcurrentLinkedDeque<Integer> linked = new ConcurrentLinkedDeque<Integer>();
+        AtomicLong count = new AtomicLong();
+        Integer task = 42;
+        Thread[] threads = new Thread[thieves];
+        for (int k = 0; k < thieves; k++) {
+            threads[k] = new Thread(() -> {
+                long mine = 0;
+                while (count.get() + mine < n) {
+                    Integer x = workStealing ? deque.steal() : linked.pollFirst();
+                    if (x != null) {
+                        mine++;
+                    }
+                    if (mine == 1024 || (x == null && mine > 0)) {
+                        count.addAndGet(mine);
+                        mine = 0;
+                    }
+                }
+                count.addAndGet(mine);
+            });
+        }
+        long t0 = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        long mine = 0;
+        for (int i = 0; i < n; i++) {
+            if (workStealing) {
+                deque.addLast(task);
+            } else {
+                linked.addLast(task);
+            }
+            if ((i & 1) == 1) {
+                if (workStealing) {
+                    try {
+                        deque.removeLast();
+                        mine++;
+                    } catch (NoSuchElementException e) {
+                        // stolen.
+                    }
+                } else if (linked.pollLast() != null) {
+                    mine++;
+                }
+            }
+        }
+        count.addAndGet(mine);
+        while (count.get() < n) {
+            Integer x = workStealing ? deque.steal() : linked.pollFirst();
+            if (x != null) {
+                count.incrementAndGet();
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return (System.nanoTime() - t0)/1000000;
+    }
+
+    // runs the stress test, then the benchmark against ConcurrentLinkedDeque.
+    //@param args optionally the number of items and the number of thieves.
+    public static void main(String[] args) throws InterruptedException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+        int thieves = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        stress(n, thieves);
+        for (int round = 0; round < 3; round++) {
+            long ws = bench(n, thieves, true);
+            long cld = bench(n, thieves, false);
+            System.out.println("bench: " + n + " items, " + thieves + " thieves: WorkStealingDeque " + ws
+                               + " ms, ConcurrentLinkedDeque " + cld + " ms");
+        }
+    }
+}